@@ -0,0 +1,104 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.securedimensions.geoxacml.datatype.GeometryValue;
+
+/**
+ * 
+ * Measures the set operations used by the bag functions ({@code BagSetFunctions}) on bags of overlapping polygons 
+ * with identical envelopes, which all had the same JTS hash code. 
+ * Half of the values of the second bag are also in the first bag.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BagSetFunctionsBenchmark
+{
+	@Param({ "1000", "5000" })
+	public int size;
+
+	@Param({ "20", "200" })
+	public int vertices;
+
+	private List<GeometryValue> bag1;
+	
+	private List<GeometryValue> bag2;
+	
+	private GeometryValue missing;
+	
+	@Setup
+	public void setUp()
+	{
+		bag1 = new ArrayList<GeometryValue>(size);
+		bag2 = new ArrayList<GeometryValue>(size);
+		for (int i = 0; i < size; i++)
+		{
+			bag1.add(new GeometryValue(BenchmarkGeometries.boxPolygon(vertices, i)));
+			// equal values, but different instances
+			bag2.add(new GeometryValue(BenchmarkGeometries.boxPolygon(vertices, i % 2 == 0 ? i : size + i)));
+		}
+		missing = new GeometryValue(BenchmarkGeometries.boxPolygon(vertices, -1));
+	}
+
+	@Benchmark
+	public Set<GeometryValue> union()
+	{
+		final Set<GeometryValue> union = new HashSet<GeometryValue>(bag1);
+		union.addAll(bag2);
+		return union;
+	}
+
+	@Benchmark
+	public Set<GeometryValue> intersection()
+	{
+		final Set<GeometryValue> intersection = new HashSet<GeometryValue>(bag1);
+		intersection.retainAll(new HashSet<GeometryValue>(bag2));
+		return intersection;
+	}
+
+	@Benchmark
+	public boolean bagContains()
+	{
+		// linear search as for a bag, all values are compared
+		return bag1.contains(missing);
+	}
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * 
+ * Generates reproducible test geometries and their encodings for the benchmarks. 
+ * All geometries use EPSG:4326 with LAT/LON axes order, like the normalized {@code GeometryValue}.
+ *
+ */
+public final class BenchmarkGeometries
+{
+	private static final GeometryFactory GF = new GeometryFactory(new PrecisionModel(), 4326);
+	
+	// Munich
+	private static final double CENTER_LAT = 48.137154;
+	private static final double CENTER_LON = 11.576124;
+	private static final double RADIUS = 0.1;
+
+	private BenchmarkGeometries()
+	{
+	}
+	
+	/**
+	 * Creates a star shaped polygon with irregular edges, similar to a zone boundary
+	 * 
+	 * @param vertices number of distinct vertices
+	 * @param seed random seed
+	 * @param offset shift of the center in degrees, used to create partially overlapping polygons
+	 * @return the polygon
+	 */
+	public static Polygon polygon(final int vertices, final long seed, final double offset)
+	{
+		final Random random = new Random(seed);
+		final Coordinate[] ring = new Coordinate[vertices + 1];
+		for (int i = 0; i < vertices; i++)
+		{
+			final double angle = 2 * Math.PI * i / vertices;
+			final double r = RADIUS * (0.7 + 0.3 * random.nextDouble());
+			ring[i] = new Coordinate(CENTER_LAT + offset + r * Math.sin(angle), CENTER_LON + offset + r * Math.cos(angle));
+		}
+		ring[vertices] = new Coordinate(ring[0]);
+		return GF.createPolygon(ring);
+	}
+	
+	/**
+	 * Creates a polygon with its vertices on the boundary of the same box. 
+	 * All polygons created by this method have the same envelope but different coordinates.
+	 * 
+	 * @param vertices number of distinct vertices, at least 4
+	 * @param seed random seed
+	 * @return the polygon
+	 */
+	public static Polygon boxPolygon(final int vertices, final long seed)
+	{
+		final Random random = new Random(seed);
+		final double minLat = CENTER_LAT - RADIUS, minLon = CENTER_LON - RADIUS, size = 2 * RADIUS;
+		final Coordinate[] ring = new Coordinate[vertices + 1];
+		final int perEdge = vertices / 4;
+		int n = 0;
+		for (int edge = 0; edge < 4; edge++)
+		{
+			final int count = edge < 3 ? perEdge : vertices - 3 * perEdge;
+			for (int i = 0; i < count; i++)
+			{
+				// the first vertex of each edge is the corner, the others are random but ordered along the edge
+				final double t = i == 0 ? 0 : (i + random.nextDouble()) / count;
+				switch (edge)
+				{
+				case 0:
+					ring[n++] = new Coordinate(minLat + t * size, minLon);
+					break;
+				case 1:
+					ring[n++] = new Coordinate(minLat + size, minLon + t * size);
+					break;
+				case 2:
+					ring[n++] = new Coordinate(minLat + size - t * size, minLon + size);
+					break;
+				default:
+					ring[n++] = new Coordinate(minLat, minLon + size - t * size);
+				}
+			}
+		}
+		ring[vertices] = new Coordinate(ring[0]);
+		return GF.createPolygon(ring);
+	}
+	
+	/**
+	 * Creates random points in an area twice the size of the envelope, so that a part of the points is far away
+	 * 
+	 * @param count number of points
+	 * @param envelope the envelope of the reference geometry
+	 * @param seed random seed
+	 * @return the points
+	 */
+	public static Point[] points(final int count, final Envelope envelope, final long seed)
+	{
+		final Random random = new Random(seed);
+		final Point[] points = new Point[count];
+		for (int i = 0; i < count; i++)
+		{
+			final double x = envelope.getMinX() - envelope.getWidth() / 2 + random.nextDouble() * envelope.getWidth() * 2;
+			final double y = envelope.getMinY() - envelope.getHeight() / 2 + random.nextDouble() * envelope.getHeight() * 2;
+			points[i] = GF.createPoint(new Coordinate(x, y));
+		}
+		return points;
+	}
+
+	public static String wkt(final Polygon p)
+	{
+		final StringBuilder sb = new StringBuilder("POLYGON((");
+		appendCoordinates(sb, p.getCoordinates(), " ", ", ");
+		return sb.append("))").toString();
+	}
+
+	public static String ewkt(final Polygon p)
+	{
+		return "SRID=4326;" + wkt(p);
+	}
+
+	public static String geoJSON(final Polygon p)
+	{
+		final StringBuilder sb = new StringBuilder("{\"type\": \"Polygon\", \"coordinates\": [[");
+		final Coordinate[] coords = p.getCoordinates();
+		for (int i = 0; i < coords.length; i++)
+		{
+			if (i > 0)
+				sb.append(", ");
+			// GeoJSON uses LON/LAT
+			sb.append('[').append(coords[i].y).append(", ").append(coords[i].x).append(']');
+		}
+		return sb.append("]]}").toString();
+	}
+
+	public static String gml2(final Polygon p)
+	{
+		final StringBuilder sb = new StringBuilder("<gml:Polygon xmlns:gml=\"http://www.opengis.net/gml\" srsName=\"EPSG:4326\">"
+				+ "<gml:outerBoundaryIs><gml:LinearRing><gml:coordinates>");
+		appendCoordinates(sb, p.getCoordinates(), ",", " ");
+		return sb.append("</gml:coordinates></gml:LinearRing></gml:outerBoundaryIs></gml:Polygon>").toString();
+	}
+
+	public static String gml3(final Polygon p)
+	{
+		final StringBuilder sb = new StringBuilder("<gml:Polygon xmlns:gml=\"http://www.opengis.net/gml/3.2\" srsName=\"EPSG:4326\">"
+				+ "<gml:exterior><gml:LinearRing><gml:posList srsDimension=\"2\">");
+		appendCoordinates(sb, p.getCoordinates(), " ", " ");
+		return sb.append("</gml:posList></gml:LinearRing></gml:exterior></gml:Polygon>").toString();
+	}
+	
+	/**
+	 * Parses an XML fragment into the content of a structured AttributeValue
+	 * 
+	 * @param xml the XML fragment
+	 * @return the AttributeValue content
+	 */
+	public static List<Serializable> content(final String xml)
+	{
+		try
+		{
+			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			final List<Serializable> content = new ArrayList<Serializable>();
+			content.add((Serializable) factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml))).getDocumentElement());
+			return content;
+		}
+		catch (ParserConfigurationException | SAXException | IOException e)
+		{
+			throw new IllegalStateException("Cannot parse benchmark GML", e);
+		}
+	}
+
+	private static void appendCoordinates(final StringBuilder sb, final Coordinate[] coords, final String ordinateSeparator, final String tupleSeparator)
+	{
+		for (int i = 0; i < coords.length; i++)
+		{
+			if (i > 0)
+				sb.append(tupleSeparator);
+			sb.append(coords[i].x).append(ordinateSeparator).append(coords[i].y);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.locationtech.jts.io.WKTWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+import de.securedimensions.geoxacml.datatype.GeometryValue;
+
+/**
+ * 
+ * Measures the readers and writers kept per thread by {@link GeometryValue} against creating them per value, 
+ * for the small geometries typical for request attributes. 
+ * Run with <tt>-prof gc</tt> to compare the allocation rate (<tt>gc.alloc.rate.norm</tt>).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class CodecReuseBenchmark
+{
+	private static final GeometryFactory GF = new GeometryFactory(new PrecisionModel());
+	
+	@Param({ "4", "100" })
+	public int vertices;
+
+	private String ewkt;
+	
+	private String geoJSON;
+	
+	private GeometryValue value;
+	
+	@Setup
+	public void setUp()
+	{
+		final Polygon polygon = BenchmarkGeometries.polygon(vertices, 42, 0);
+		ewkt = BenchmarkGeometries.ewkt(polygon);
+		geoJSON = BenchmarkGeometries.geoJSON(polygon);
+		value = new GeometryValue(polygon);
+	}
+
+	@Benchmark
+	public GeometryValue readEWKT()
+	{
+		return GeometryValue.FACTORY.getInstance(ewkt, null, null);
+	}
+
+	@Benchmark
+	public Geometry readEWKTBaseline() throws ParseException
+	{
+		// the former implementation: one reader per value
+		final String[] st = ewkt.split(";");
+		final Geometry g = new WKTReader(GF).read(st[1]);
+		g.setSRID(4326);
+		return g;
+	}
+
+	@Benchmark
+	public GeometryValue readGeoJSON()
+	{
+		return GeometryValue.FACTORY.getInstance(geoJSON, null, null);
+	}
+
+	@Benchmark
+	public Geometry readGeoJSONBaseline()
+	{
+		return new GeoJSONReader().read(geoJSON);
+	}
+
+	@Benchmark
+	public String writeEWKT()
+	{
+		return value.toString();
+	}
+
+	@Benchmark
+	public String writeEWKTBaseline()
+	{
+		final Geometry g = value.getUnderlyingValue();
+		return "SRID=" + String.valueOf(g.getSRID()) + ";" + new WKTWriter().write(g);
+	}
+}
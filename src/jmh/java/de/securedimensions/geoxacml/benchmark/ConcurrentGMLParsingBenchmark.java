@@ -0,0 +1,117 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Node;
+
+import de.securedimensions.geoxacml.datatype.GeometryValue;
+import de.securedimensions.geoxacml.io.gml3.GMLHandler;
+import de.securedimensions.geoxacml.io.gml3.GMLReader;
+
+/**
+ * 
+ * Measures GML3 parsing with 32 concurrent threads, as seen by a PDP processing decisions in parallel.
+ * The <code>*PerValue</code> benchmarks create the XML infrastructure for every value, as done before 
+ * the parsers were kept per thread. Run with <code>-prof gc</code> to compare the allocation rates.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class ConcurrentGMLParsingBenchmark
+{
+	private static final GeometryFactory GF = new GeometryFactory(new PrecisionModel());
+	
+	@Param({ "100", "10000" })
+	public int vertices;
+
+	private String gml;
+	
+	private List<Serializable> content;
+	
+	@Setup
+	public void setUp()
+	{
+		final Polygon polygon = BenchmarkGeometries.polygon(vertices, 42, 0);
+		gml = BenchmarkGeometries.gml3(polygon);
+		content = BenchmarkGeometries.content(gml);
+	}
+
+	@Benchmark
+	public GeometryValue factoryFromDOM()
+	{
+		return GeometryValue.FACTORY.getInstance(content, null, null);
+	}
+
+	@Benchmark
+	public Geometry factoryFromDOMPerValue() throws Exception
+	{
+		// DOM -> new Transformer -> bytes -> new SAXParser
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource((Node) content.get(0)), new StreamResult(outputStream));
+		final GMLHandler gh = new GMLHandler(GF, null);
+		SAXParserFactory.newInstance().newSAXParser().parse(new ByteArrayInputStream(outputStream.toByteArray()), gh);
+		return gh.getGeometry();
+	}
+
+	@Benchmark
+	public Geometry readerFromString() throws Exception
+	{
+		return new GMLReader().read(gml, GF);
+	}
+
+	@Benchmark
+	public Geometry readerFromStringPerValue() throws Exception
+	{
+		final GMLHandler gh = new GMLHandler(GF, null);
+		SAXParserFactory.newInstance().newSAXParser().parse(new ByteArrayInputStream(gml.getBytes("UTF-8")), gh);
+		return gh.getGeometry();
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.securedimensions.geoxacml.datatype.CompactCoordinateSequenceFactory;
+
+/**
+ * 
+ * Measures the time and allocation of copying a sequence into the coordinate storage options of the system property 
+ * {@value CompactCoordinateSequenceFactory#COORDINATES_PROPERTY}. Run with <tt>-prof gc</tt>: 
+ * <tt>gc.alloc.rate.norm</tt> divided by the number of vertices is the number of bytes allocated per vertex by the copy. 
+ * This is an estimate of the heap retained per vertex, not a measurement of parsed geometries: it includes 
+ * temporary objects and excludes the geometry objects.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateStorageBenchmark
+{
+	@Param({ "array", "double", "float" })
+	public String storage;
+
+	@Param({ "1000", "100000" })
+	public int vertices;
+
+	private CoordinateSequenceFactory factory;
+	
+	private CoordinateSequence source;
+	
+	@Setup
+	public void setUp()
+	{
+		factory = CompactCoordinateSequenceFactory.forName(storage);
+		source = PackedCoordinateSequenceFactory.DOUBLE.create(BenchmarkGeometries.polygon(vertices, 42, 0).getExteriorRing().getCoordinateSequence());
+	}
+
+	@Benchmark
+	public CoordinateSequence store()
+	{
+		return factory.create(source);
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.securedimensions.geoxacml.datatype.GeometryValue;
+
+/**
+ * 
+ * Measures {@link GeometryValue.Factory#getInstance} for the supported encodings and different geometry sizes.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeometryParsingBenchmark
+{
+	@Param({ "WKT", "EWKT", "GEOJSON", "GML2", "GML3" })
+	public String encoding;
+
+	@Param({ "4", "100", "10000" })
+	public int vertices;
+
+	private String text;
+	
+	private List<Serializable> content;
+	
+	private Map<QName, String> otherXmlAttributes;
+	
+	@Setup
+	public void setUp()
+	{
+		final Polygon polygon = BenchmarkGeometries.polygon(vertices, 42, 0);
+		otherXmlAttributes = new HashMap<QName, String>();
+		otherXmlAttributes.put(new QName("http://www.opengis.net/geoxacml", "crs"), "EPSG:4326");
+		
+		switch (encoding)
+		{
+		case "WKT":
+			text = BenchmarkGeometries.wkt(polygon);
+			break;
+		case "EWKT":
+			text = BenchmarkGeometries.ewkt(polygon);
+			break;
+		case "GEOJSON":
+			text = BenchmarkGeometries.geoJSON(polygon);
+			break;
+		case "GML2":
+			content = BenchmarkGeometries.content(BenchmarkGeometries.gml2(polygon));
+			break;
+		case "GML3":
+			content = BenchmarkGeometries.content(BenchmarkGeometries.gml3(polygon));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown encoding: " + encoding);
+		}
+	}
+
+	@Benchmark
+	public GeometryValue getInstance()
+	{
+		if (content != null)
+			return GeometryValue.FACTORY.getInstance(content, otherXmlAttributes, null);
+		
+		return GeometryValue.FACTORY.getInstance(text, otherXmlAttributes, null);
+	}
+}
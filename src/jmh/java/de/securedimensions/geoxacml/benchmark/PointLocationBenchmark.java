@@ -0,0 +1,97 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.securedimensions.geoxacml.datatype.GeometryValue;
+import de.securedimensions.geoxacml.index.GridCovering;
+
+/**
+ * 
+ * Measures the location of random points relative to a large zone with the indexed point locator 
+ * and with the grid covering of the zone for different resolutions.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PointLocationBenchmark
+{
+	@Param({ "10000", "100000" })
+	public int vertices;
+
+	@Param({ "64", "256", "1024" })
+	public int resolution;
+
+	private IndexedPointInAreaLocator locator;
+	
+	private GridCovering covering;
+	
+	private Coordinate[] points;
+	
+	private int next = 0;
+	
+	@Setup
+	public void setUp()
+	{
+		final Polygon zone = BenchmarkGeometries.polygon(vertices, 42, 0);
+		final GeometryValue value = new GeometryValue(zone);
+		locator = new IndexedPointInAreaLocator(zone);
+		covering = GridCovering.build(zone, value.getPointLocator(), resolution);
+		
+		final Point[] randomPoints = BenchmarkGeometries.points(1024, zone.getEnvelopeInternal(), 7);
+		points = new Coordinate[randomPoints.length];
+		for (int i = 0; i < points.length; i++)
+			points[i] = randomPoints[i].getCoordinate();
+	}
+
+	@Benchmark
+	public int indexedLocator()
+	{
+		return locator.locate(points[next++ & (points.length - 1)]);
+	}
+
+	@Benchmark
+	public int gridCovering()
+	{
+		final Coordinate p = points[next++ & (points.length - 1)];
+		final byte cell = covering.classify(p);
+		return cell != GridCovering.BOUNDARY ? cell : locator.locate(p);
+	}
+}
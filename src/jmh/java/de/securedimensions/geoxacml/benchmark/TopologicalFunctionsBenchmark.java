@@ -0,0 +1,145 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.benchmark;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunctionCall;
+import org.ow2.authzforce.core.pdp.api.func.SingleParameterTypedFirstOrderFunction;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+
+import de.securedimensions.geoxacml.datatype.GeometryValue;
+import de.securedimensions.geoxacml.function.TopologicalFunctions;
+
+/**
+ * 
+ * Measures the topological functions with a policy zone (constant, prepared) and changing request geometries.
+ * The functions are called through their public API without a PDP: both arguments are passed at evaluation time, 
+ * the zone is prepared like a constant at policy load time.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopologicalFunctionsBenchmark
+{
+	@Param({ "equals", "disjoint", "touches", "crosses", "within", "contains", "overlaps", "intersects" })
+	public String predicate;
+
+	@Param({ "POINT_IN_POLYGON", "POLYGON_POLYGON" })
+	public String workload;
+	
+	@Param({ "100", "10000" })
+	public int vertices;
+
+	private SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue> function;
+	
+	private FirstOrderFunctionCall<BooleanValue> call;
+	
+	private GeometryValue zone;
+	
+	private Geometry[] requestGeometries;
+	
+	private int next = 0;
+	
+	@Setup
+	public void setUp()
+	{
+		switch (predicate)
+		{
+		case "equals":
+			function = new TopologicalFunctions.Equals();
+			break;
+		case "disjoint":
+			function = new TopologicalFunctions.Disjoint();
+			break;
+		case "touches":
+			function = new TopologicalFunctions.Touches();
+			break;
+		case "crosses":
+			function = new TopologicalFunctions.Crosses();
+			break;
+		case "within":
+			function = new TopologicalFunctions.Within();
+			break;
+		case "contains":
+			function = new TopologicalFunctions.Contains();
+			break;
+		case "overlaps":
+			function = new TopologicalFunctions.Overlaps();
+			break;
+		case "intersects":
+			function = new TopologicalFunctions.Intersects();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown predicate: " + predicate);
+		}
+		
+		// The zone is a constant in the policy and therefore prepared at policy load time
+		zone = new GeometryValue(BenchmarkGeometries.polygon(vertices, 42, 0));
+		zone.getPreparedGeometry();
+		zone.getPointLocator();
+		zone.getGridCovering();
+		
+		call = function.newCall(Collections.emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE);
+		
+		if ("POINT_IN_POLYGON".equals(workload))
+		{
+			requestGeometries = BenchmarkGeometries.points(1024, zone.getUnderlyingValue().getEnvelopeInternal(), 7);
+		}
+		else
+		{
+			// polygons shifted around the zone: some overlap, some are disjoint
+			requestGeometries = new Geometry[64];
+			for (int i = 0; i < requestGeometries.length; i++)
+				requestGeometries[i] = BenchmarkGeometries.polygon(100, i, (i - 32) * 0.01);
+		}
+	}
+
+	@Benchmark
+	public BooleanValue evaluate() throws IndeterminateEvaluationException
+	{
+		// Each request brings a new value
+		final GeometryValue request = new GeometryValue(requestGeometries[next++ & (requestGeometries.length - 1)]);
+		
+		// contains(zone, request), for all other predicates e.g. within(request, zone)
+		if (function instanceof TopologicalFunctions.Contains)
+			return call.evaluate(null, Optional.empty(), zone, request);
+		
+		return call.evaluate(null, Optional.empty(), request, zone);
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.crs;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves CRS names to the SRID of the geometry.
+ * <p>
+ * The code is the last part of the name after a <tt>/</tt>, <tt>:</tt> or <tt>,</tt> separator, e.g. <tt>EPSG:4326</tt>, 
+ * <tt>urn:ogc:def:crs:EPSG::4326</tt> or <tt>http://www.opengis.net/def/crs/EPSG/0/25832</tt>. 
+ * The codes <tt>CRS84</tt>, <tt>84</tt> and <tt>WGS84</tt> denote WGS 84 with LON/LAT axes order and resolve to the 
+ * internal SRID {@value #CRS84}; the geometry is normalized to LAT/LON with SRID 4326.
+ * <p>
+ * The common names are registered at class initialization. Other names are parsed once and then resolved 
+ * by the same table, up to {@value #MAX_NAMES} names; further names are parsed on every use. 
+ * The number of uses per name is available from {@link #getUsedNames()}, so that frequently used names can be 
+ * registered with {@link #register(String, int)}.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH. 
+ *
+ */
+public final class CRSRegistry
+{
+	/**
+	 * Internal SRID of WGS 84 with LON/LAT axes order
+	 */
+	public static final int CRS84 = -4326;
+	
+	/**
+	 * Maximum number of names in the table. Names are taken from requests, so the table must not grow without limit.
+	 */
+	public static final int MAX_NAMES = 1024;
+	
+	private static final class Entry
+	{
+		private final int srid;
+		private final LongAdder uses = new LongAdder();
+		
+		private Entry(final int srid)
+		{
+			this.srid = srid;
+		}
+	}
+	
+	private static final ConcurrentMap<String, Entry> NAMES = new ConcurrentHashMap<String, Entry>();
+	static
+	{
+		register("EPSG:4326", 4326);
+		register("urn:ogc:def:crs:EPSG::4326", 4326);
+		register("http://www.opengis.net/def/crs/EPSG/0/4326", 4326);
+		register("CRS84", CRS84);
+		register("WGS84", CRS84);
+		register("urn:ogc:def:crs:OGC::CRS84", CRS84);
+		register("urn:ogc:def:crs:OGC:1.3:CRS84", CRS84);
+		register("http://www.opengis.net/def/crs/OGC/1.3/CRS84", CRS84);
+	}
+	
+	private CRSRegistry()
+	{
+	}
+	
+	/**
+	 * Registers a CRS name. Registered names are resolved by one table lookup.
+	 * 
+	 * @param name the CRS name as used in the AttributeValues
+	 * @param srid the SRID, {@value #CRS84} for LON/LAT axes order
+	 */
+	public static void register(final String name, final int srid)
+	{
+		NAMES.put(name, new Entry(srid));
+	}
+	
+	/**
+	 * @param name the CRS name
+	 * @return the SRID
+	 * @throws IllegalArgumentException if the name does not end with a numeric code or a CRS84 alias
+	 */
+	public static int getSRID(final String name) throws IllegalArgumentException
+	{
+		Entry entry = NAMES.get(name);
+		if (entry == null)
+		{
+			entry = new Entry(parse(name));
+			if (NAMES.size() < MAX_NAMES)
+			{
+				final Entry existing = NAMES.putIfAbsent(name, entry);
+				if (existing != null)
+					entry = existing;
+			}
+		}
+		entry.uses.increment();
+		return entry.srid;
+	}
+	
+	/**
+	 * @return the number of uses per CRS name, for all names in the table that were used since startup
+	 */
+	public static Map<String, Long> getUsedNames()
+	{
+		final Map<String, Long> used = new TreeMap<String, Long>();
+		for (Map.Entry<String, Entry> e : NAMES.entrySet())
+		{
+			final long uses = e.getValue().uses.sum();
+			if (uses > 0)
+				used.put(e.getKey(), uses);
+		}
+		return used;
+	}
+	
+	/*
+	 * Parses the code after the last separator, ignoring trailing separators
+	 */
+	private static int parse(final String name)
+	{
+		int end = name.length();
+		while (end > 0 && isSeparator(name.charAt(end - 1)))
+			end--;
+		
+		int start = end;
+		while (start > 0 && !isSeparator(name.charAt(start - 1)))
+			start--;
+		
+		final String code = name.substring(start, end);
+		if (code.equalsIgnoreCase("CRS84") || code.equals("84") || code.equalsIgnoreCase("WGS84"))
+			return CRS84;
+		
+		try
+		{
+			return Integer.parseInt(code);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Unknown CRS: " + name);
+		}
+	}
+	
+	private static boolean isSeparator(final char c)
+	{
+		return c == '/' || c == ':' || c == ',';
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.crs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.proj4j.CRSFactory;
+import org.locationtech.proj4j.CoordinateReferenceSystem;
+import org.locationtech.proj4j.CoordinateTransform;
+import org.locationtech.proj4j.CoordinateTransformFactory;
+import org.locationtech.proj4j.Proj4jException;
+import org.locationtech.proj4j.ProjCoordinate;
+import org.locationtech.proj4j.proj.LongLatProjection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transforms geometries between coordinate reference systems identified by their EPSG code (the SRID of the geometry).
+ * <p>
+ * The CRS definitions are taken from the EPSG definition set embedded in Proj4J, no network access is required. 
+ * The definitions are parsed once per SRID and shared. The compiled transforms are kept per pair of SRIDs and thread, 
+ * as a Proj4J transform keeps intermediate results and must not be used concurrently.
+ * <p>
+ * Geographic coordinates are stored as LAT/LON by this implementation (see {@link SwapAxesCoordinateFilter}), 
+ * Proj4J expects LON/LAT; the axes of geographic CRS are therefore swapped before and after the transform. 
+ * Projected coordinates are expected as EASTING/NORTHING.
+ * <p>
+ * The reprojection is enabled with the system property {@value #REPROJECTION_PROPERTY}.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH. 
+ *
+ */
+public final class Reprojection
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(Reprojection.class);
+	
+	/**
+	 * If <tt>true</tt>, the topological functions transform geometries with different SRID into the same CRS 
+	 * instead of returning <tt>false</tt>; default is <tt>false</tt>
+	 */
+	public static final String REPROJECTION_PROPERTY = "de.securedimensions.geoxacml.reprojection";
+	
+	private static final CRSFactory CRS_FACTORY = new CRSFactory();
+	
+	private static final CoordinateTransformFactory TRANSFORM_FACTORY = new CoordinateTransformFactory();
+	
+	private static final ConcurrentMap<Integer, CoordinateReferenceSystem> CRS = new ConcurrentHashMap<Integer, CoordinateReferenceSystem>();
+	
+	private static final ThreadLocal<Map<Long, CoordinateTransform>> TRANSFORMS = ThreadLocal.withInitial(HashMap::new);
+	
+	private Reprojection()
+	{
+	}
+	
+	/**
+	 * The property is read on each call, it is only checked for arguments with different SRID.
+	 * 
+	 * @return true if the reprojection is enabled, see {@link #REPROJECTION_PROPERTY}
+	 */
+	public static boolean isEnabled()
+	{
+		return Boolean.getBoolean(REPROJECTION_PROPERTY);
+	}
+	
+	/**
+	 * Transforms a geometry into another CRS. The geometry is not modified.
+	 * 
+	 * @param g the geometry with the SRID of its CRS
+	 * @param targetSrid the SRID of the target CRS
+	 * @return a new geometry with the transformed coordinates and the target SRID
+	 * @throws IllegalArgumentException if a CRS is unknown or the coordinates cannot be transformed
+	 */
+	public static Geometry transform(final Geometry g, final int targetSrid) throws IllegalArgumentException
+	{
+		final int sourceSrid = g.getSRID();
+		final Geometry result = g.copy();
+		if (sourceSrid != targetSrid && !g.isEmpty())
+		{
+			try
+			{
+				result.apply(new TransformFilter(getTransform(sourceSrid, targetSrid)));
+			}
+			catch (Proj4jException e)
+			{
+				throw new IllegalArgumentException("Cannot transform geometry from EPSG:" + sourceSrid + " to EPSG:" + targetSrid + ": " + e.getMessage(), e);
+			}
+		}
+		result.setSRID(targetSrid);
+		result.setUserData(g.getUserData());
+		return result;
+	}
+	
+	private static CoordinateTransform getTransform(final int sourceSrid, final int targetSrid)
+	{
+		final Long key = ((long) sourceSrid << 32) | (targetSrid & 0xFFFFFFFFL);
+		final Map<Long, CoordinateTransform> transforms = TRANSFORMS.get();
+		CoordinateTransform transform = transforms.get(key);
+		if (transform == null)
+		{
+			transform = TRANSFORM_FACTORY.createTransform(getCRS(sourceSrid), getCRS(targetSrid));
+			transforms.put(key, transform);
+		}
+		return transform;
+	}
+	
+	private static CoordinateReferenceSystem getCRS(final int srid)
+	{
+		if (srid <= 0)
+			throw new IllegalArgumentException("Geometry without EPSG code cannot be transformed: SRID " + srid);
+		
+		return CRS.computeIfAbsent(srid, code -> {
+			try
+			{
+				final CoordinateReferenceSystem crs = CRS_FACTORY.createFromName("EPSG:" + code);
+				LOGGER.debug("Loaded CRS definition EPSG:{}: {}", code, crs.getParameterString());
+				return crs;
+			}
+			catch (Proj4jException e)
+			{
+				throw new IllegalArgumentException("Unknown CRS EPSG:" + code + ": " + e.getMessage(), e);
+			}
+		});
+	}
+	
+	/**
+	 * Transforms all coordinates in place, swapping the axes of geographic coordinates
+	 */
+	private static final class TransformFilter implements CoordinateSequenceFilter
+	{
+		private final CoordinateTransform transform;
+		
+		private final boolean sourceLatLon;
+		
+		private final boolean targetLatLon;
+		
+		private final ProjCoordinate source = new ProjCoordinate();
+		
+		private final ProjCoordinate target = new ProjCoordinate();
+		
+		private TransformFilter(final CoordinateTransform transform)
+		{
+			this.transform = transform;
+			this.sourceLatLon = transform.getSourceCRS().getProjection() instanceof LongLatProjection;
+			this.targetLatLon = transform.getTargetCRS().getProjection() instanceof LongLatProjection;
+		}
+		
+		@Override
+		public void filter(CoordinateSequence seq, int i)
+		{
+			source.x = seq.getOrdinate(i, sourceLatLon ? CoordinateSequence.Y : CoordinateSequence.X);
+			source.y = seq.getOrdinate(i, sourceLatLon ? CoordinateSequence.X : CoordinateSequence.Y);
+			source.z = seq.hasZ() ? seq.getZ(i) : Double.NaN;
+			transform.transform(source, target);
+			seq.setOrdinate(i, CoordinateSequence.X, targetLatLon ? target.y : target.x);
+			seq.setOrdinate(i, CoordinateSequence.Y, targetLatLon ? target.x : target.y);
+			if (seq.hasZ() && !Double.isNaN(target.z))
+				seq.setOrdinate(i, CoordinateSequence.Z, target.z);
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean isGeometryChanged()
+		{
+			return true;
+		}
+	}
+}
@@ -18,17 +18,21 @@
 
 package de.securedimensions.geoxacml.crs;
 
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Swaps the first two axes of all coordinates of a geometry in place.
+ * <p>
+ * The swap is applied to the {@link CoordinateSequence}s, not to {@link org.locationtech.jts.geom.Coordinate} instances, 
+ * as these are copies for coordinate sequences backed by primitive arrays.
  * 
  * @author Andreas Matheus, Secure Dimensions GmbH. 
  *
  */
-public class SwapAxesCoordinateFilter implements CoordinateFilter
+public class SwapAxesCoordinateFilter implements CoordinateSequenceFilter
 {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SwapAxesCoordinateFilter.class);
 
@@ -38,16 +42,18 @@ public class SwapAxesCoordinateFilter implements CoordinateFilter
 	}
 	
 	@Override
-	public void filter(Coordinate coord) {
-		double tmp = coord.y;
-		coord.y = coord.x;
-		coord.x = tmp;
+	public void filter(CoordinateSequence seq, int i) {
+		double tmp = seq.getOrdinate(i, CoordinateSequence.Y);
+		seq.setOrdinate(i, CoordinateSequence.Y, seq.getOrdinate(i, CoordinateSequence.X));
+		seq.setOrdinate(i, CoordinateSequence.X, tmp);
 	}
 	
+	@Override
 	public boolean isDone() {
-		return true;
+		return false;
 	}
 
+	@Override
 	public boolean isGeometryChanged() {
 		return true;
 	}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.datatype;
+
+import java.io.Serializable;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+/**
+ * Creates {@link PackedCoordinateSequence}s which store the ordinates in one <tt>double</tt> or <tt>float</tt> array 
+ * instead of one {@link Coordinate} object per vertex. 
+ * <p>
+ * Sequences created from coordinates or other sequences only store X and Y if no coordinate has a Z value; 
+ * M values are dropped. Estimated from the object layout on a 64 bit JVM with compressed references, a vertex takes 
+ * 16 bytes (double) or 8 bytes (float) instead of about 44 bytes with the default 
+ * {@link org.locationtech.jts.geom.impl.CoordinateArraySequence}; these figures are not measured.
+ * Float storage keeps about 7 significant digits, i.e. about one meter for geographic coordinates.
+ * <p>
+ * The coordinate storage of the geometries created by the {@link GeometryValue.Factory} is selected with the 
+ * system property {@value #COORDINATES_PROPERTY}: <tt>array</tt> (default), <tt>double</tt> or <tt>float</tt>.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH. 
+ *
+ */
+public final class CompactCoordinateSequenceFactory implements CoordinateSequenceFactory, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * System property selecting the coordinate storage
+	 */
+	public static final String COORDINATES_PROPERTY = "de.securedimensions.geoxacml.coordinates";
+	
+	/**
+	 * Stores the ordinates as double
+	 */
+	public static final CompactCoordinateSequenceFactory DOUBLE = new CompactCoordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE);
+	
+	/**
+	 * Stores the ordinates as float
+	 */
+	public static final CompactCoordinateSequenceFactory FLOAT = new CompactCoordinateSequenceFactory(PackedCoordinateSequenceFactory.FLOAT);
+	
+	private final PackedCoordinateSequenceFactory packed;
+	
+	private CompactCoordinateSequenceFactory(final PackedCoordinateSequenceFactory packed)
+	{
+		this.packed = packed;
+	}
+	
+	/**
+	 * @param name <tt>array</tt>, <tt>double</tt> or <tt>float</tt>
+	 * @return the coordinate sequence factory
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public static CoordinateSequenceFactory forName(final String name)
+	{
+		if ("array".equalsIgnoreCase(name))
+			return CoordinateArraySequenceFactory.instance();
+		if ("double".equalsIgnoreCase(name))
+			return DOUBLE;
+		if ("float".equalsIgnoreCase(name))
+			return FLOAT;
+		
+		throw new IllegalArgumentException("Unknown coordinate storage for " + COORDINATES_PROPERTY + ": " + name);
+	}
+	
+	/**
+	 * Creates a sequence with the storage of the given factory from decoded ordinates. 
+	 * The packed <tt>double</tt> storage uses the array without copying it.
+	 * 
+	 * @param factory the coordinate sequence factory, usually the one of the {@link org.locationtech.jts.geom.GeometryFactory}
+	 * @param coords X, Y and, if the dimension is 3, Z of each coordinate; must not be modified afterwards
+	 * @param dimension 2 or 3
+	 * @return the coordinate sequence
+	 */
+	public static CoordinateSequence fromOrdinates(final CoordinateSequenceFactory factory, final double[] coords, final int dimension)
+	{
+		if (factory == DOUBLE)
+			return new PackedCoordinateSequence.Double(coords, dimension, 0);
+		if (factory == FLOAT)
+			return new PackedCoordinateSequence.Float(coords, dimension, 0);
+		
+		final int size = coords.length / dimension;
+		final CoordinateSequence cs = factory.create(size, dimension);
+		for (int i = 0, j = 0; i < size; i++, j += dimension)
+		{
+			cs.setOrdinate(i, CoordinateSequence.X, coords[j]);
+			cs.setOrdinate(i, CoordinateSequence.Y, coords[j + 1]);
+			if (dimension == 3)
+				cs.setOrdinate(i, CoordinateSequence.Z, coords[j + 2]);
+		}
+		return cs;
+	}
+	
+	@Override
+	public CoordinateSequence create(final Coordinate[] coordinates)
+	{
+		if (coordinates == null)
+			return packed.create(0, 2);
+		
+		int dimension = 2;
+		for (Coordinate c : coordinates)
+		{
+			if (!Double.isNaN(c.getZ()))
+			{
+				dimension = 3;
+				break;
+			}
+		}
+		
+		final CoordinateSequence cs = packed.create(coordinates.length, dimension);
+		for (int i = 0; i < coordinates.length; i++)
+		{
+			cs.setOrdinate(i, CoordinateSequence.X, coordinates[i].x);
+			cs.setOrdinate(i, CoordinateSequence.Y, coordinates[i].y);
+			if (dimension == 3)
+				cs.setOrdinate(i, CoordinateSequence.Z, coordinates[i].getZ());
+		}
+		return cs;
+	}
+
+	@Override
+	public CoordinateSequence create(final CoordinateSequence coordSeq)
+	{
+		final int size = coordSeq.size();
+		int dimension = 2;
+		if (coordSeq.hasZ())
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (!Double.isNaN(coordSeq.getZ(i)))
+				{
+					dimension = 3;
+					break;
+				}
+			}
+		}
+		
+		final CoordinateSequence cs = packed.create(size, dimension);
+		for (int i = 0; i < size; i++)
+		{
+			cs.setOrdinate(i, CoordinateSequence.X, coordSeq.getX(i));
+			cs.setOrdinate(i, CoordinateSequence.Y, coordSeq.getY(i));
+			if (dimension == 3)
+				cs.setOrdinate(i, CoordinateSequence.Z, coordSeq.getZ(i));
+		}
+		return cs;
+	}
+
+	@Override
+	public CoordinateSequence create(final int size, final int dimension)
+	{
+		return packed.create(size, dimension);
+	}
+
+	@Override
+	public CoordinateSequence create(final int size, final int dimension, final int measures)
+	{
+		return packed.create(size, dimension, measures);
+	}
+	
+	private Object readResolve()
+	{
+		return packed == PackedCoordinateSequenceFactory.FLOAT ? FLOAT : DOUBLE;
+	}
+}
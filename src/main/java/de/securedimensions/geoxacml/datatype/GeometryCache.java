@@ -0,0 +1,328 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.datatype;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of {@link GeometryValue}s parsed from String encodings (WKT, EWKT, GeoJSON, WKB, TWKB).
+ * <p>
+ * The key is the SHA-256 digest of the encoding together with the value of the <tt>crs</tt> attribute of the AttributeValue, 
+ * so the cache does not keep the encodings. The characters are digested through a buffer of each thread, without a copy 
+ * of the encoding. The cached value is the axis normalized GeometryValue as returned by 
+ * the {@link GeometryValue.Factory}. 
+ * The size is limited by the total number of vertices of the cached geometries. 
+ * Geometries with more vertices than the limit are not cached.
+ * <p>
+ * Lookups do not lock: the values are kept in a {@link ConcurrentHashMap} and a hit only marks the entry as referenced. 
+ * When a new value exceeds the limit, entries are evicted in insertion order, except that referenced entries get a 
+ * second chance (CLOCK approximation of least recently used). Only insertions and evictions are serialized.
+ * <p>
+ * The cache is enabled with the system property {@value GeometryValue.Factory#CACHE_MAX_WEIGHT_PROPERTY}.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH. 
+ *
+ */
+public final class GeometryCache
+{
+	// MessageDigest instances are not thread-safe
+	private static final ThreadLocal<Digester> DIGESTERS = ThreadLocal.withInitial(Digester::new);
+	
+	/**
+	 * The digest of an encoding and its crs attribute, see {@link #key(String, String)}
+	 */
+	static final class Key
+	{
+		private final byte[] digest;
+		private final int hashCode;
+		
+		private Key(final byte[] digest)
+		{
+			this.digest = digest;
+			this.hashCode = Arrays.hashCode(digest);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+		
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+				return true;
+			
+			if (!(obj instanceof Key))
+				return false;
+			
+			final Key other = (Key) obj;
+			return hashCode == other.hashCode && Arrays.equals(digest, other.digest);
+		}
+	}
+	
+	private static final class Entry
+	{
+		private final Key key;
+		private final GeometryValue value;
+		private final long weight;
+		
+		// set by lookups, cleared when the entry gets a second chance
+		private volatile boolean referenced = false;
+		
+		private Entry(final Key key, final GeometryValue value, final long weight)
+		{
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+	
+	private final long maxWeight;
+	
+	private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	
+	// eviction order, guarded by the lock on this queue like the weight
+	private final Queue<Entry> clock = new ConcurrentLinkedQueue<Entry>();
+	
+	private volatile long weight = 0;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	/**
+	 * @param maxWeight maximum total number of vertices, 0 disables the cache
+	 */
+	GeometryCache(final long maxWeight)
+	{
+		this.maxWeight = Math.max(0, maxWeight);
+	}
+	
+	private static final class Digester
+	{
+		private static final int CHUNK = 1024;
+		
+		private final MessageDigest digest;
+		private final char[] chars = new char[CHUNK];
+		private final byte[] bytes = new byte[2 * CHUNK];
+		
+		private Digester()
+		{
+			try
+			{
+				digest = MessageDigest.getInstance("SHA-256");
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				// every Java platform supports SHA-256
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		/*
+		 * Digests the length and the UTF-16 code units of the String, the length separates it from the next String
+		 */
+		private void update(final String s)
+		{
+			final int length = s.length();
+			digest.update((byte) (length >>> 24));
+			digest.update((byte) (length >>> 16));
+			digest.update((byte) (length >>> 8));
+			digest.update((byte) length);
+			for (int start = 0; start < length; start += CHUNK)
+			{
+				final int end = Math.min(length, start + CHUNK);
+				s.getChars(start, end, chars, 0);
+				int b = 0;
+				for (int i = 0; i < end - start; i++)
+				{
+					bytes[b++] = (byte) (chars[i] >>> 8);
+					bytes[b++] = (byte) chars[i];
+				}
+				digest.update(bytes, 0, b);
+			}
+		}
+	}
+	
+	/**
+	 * Computes the key of an encoding once, so that the lookup and the insertion after a miss can share it
+	 * 
+	 * @param encoding the String encoding
+	 * @param crs the crs attribute, null if not present or not relevant for the encoding
+	 * @return the key
+	 */
+	static Key key(final String encoding, final String crs)
+	{
+		final Digester digester = DIGESTERS.get();
+		digester.update(encoding);
+		if (crs != null)
+			digester.update(crs);
+		
+		return new Key(digester.digest.digest());
+	}
+	
+	/**
+	 * @return true if values are cached
+	 */
+	public boolean isEnabled()
+	{
+		return maxWeight > 0;
+	}
+	
+	/**
+	 * @param key the key of the encoding, see {@link #key(String, String)}
+	 * @return the cached value or null
+	 */
+	GeometryValue get(final Key key)
+	{
+		final Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			misses.increment();
+			return null;
+		}
+		
+		hits.increment();
+		// avoid writing the shared entry on every hit
+		if (!entry.referenced)
+			entry.referenced = true;
+		
+		return entry.value;
+	}
+	
+	/**
+	 * @param key the key of the encoding, see {@link #key(String, String)}
+	 * @param value the value parsed from the encoding
+	 */
+	void put(final Key key, final GeometryValue value)
+	{
+		final long valueWeight = weight(value);
+		if (valueWeight > maxWeight)
+			return;
+		
+		synchronized (clock)
+		{
+			// concurrent misses of the same encoding parse it more than once, the first value is kept
+			if (entries.containsKey(key))
+				return;
+			
+			final Entry entry = new Entry(key, value, valueWeight);
+			entries.put(key, entry);
+			clock.add(entry);
+			long w = weight + valueWeight;
+			
+			while (w > maxWeight)
+			{
+				final Entry eldest = clock.poll();
+				if (eldest.referenced)
+				{
+					eldest.referenced = false;
+					clock.add(eldest);
+					continue;
+				}
+				
+				entries.remove(eldest.key);
+				w -= eldest.weight;
+				evictions.increment();
+			}
+			weight = w;
+		}
+	}
+	
+	/**
+	 * Removes all values
+	 */
+	public void clear()
+	{
+		synchronized (clock)
+		{
+			entries.clear();
+			clock.clear();
+			weight = 0;
+		}
+	}
+	
+	private static long weight(final GeometryValue value)
+	{
+		// empty geometries count as one
+		return Math.max(1, value.getUnderlyingValue().getNumPoints());
+	}
+	
+	/**
+	 * @return maximum total number of vertices
+	 */
+	public long getMaxWeight()
+	{
+		return maxWeight;
+	}
+	
+	/**
+	 * @return current total number of vertices
+	 */
+	public long getWeight()
+	{
+		return weight;
+	}
+	
+	/**
+	 * @return number of cached values
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+	
+	/**
+	 * @return number of lookups that returned a cached value
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+	
+	/**
+	 * @return number of lookups that required parsing
+	 */
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+	
+	/**
+	 * @return number of values removed to stay within the maximum weight
+	 */
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "GeometryCache [size=" + size() + ", weight=" + getWeight() + "/" + maxWeight + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.datatype;
+
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKTReader;
+import org.locationtech.jts.io.WKTWriter;
+
+import de.securedimensions.geoxacml.io.TWKBReader;
+import de.securedimensions.geoxacml.io.geojson.GeoJSONReader;
+import de.securedimensions.geoxacml.io.gml3.GMLWriter;
+
+/**
+ * The readers and writers used by {@link GeometryValue} and its factory.
+ * <p>
+ * The JTS readers and writers are not thread-safe, but they can be re-used. Instead of creating a reader per value 
+ * and a writer per {@link GeometryValue#toString()} or {@link GeometryValue#printXML()}, one set is kept per thread.
+ * The instances must not be passed to other threads.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH. 
+ *
+ */
+final class GeometryCodecs
+{
+	/**
+	 * GeometryFactory used for all geometries. It is immutable and can be shared by all threads.
+	 * The coordinate storage is selected with the system property {@value CompactCoordinateSequenceFactory#COORDINATES_PROPERTY}.
+	 */
+	static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 0, 
+			CompactCoordinateSequenceFactory.forName(System.getProperty(CompactCoordinateSequenceFactory.COORDINATES_PROPERTY, "array")));
+	
+	private static final ThreadLocal<GeometryCodecs> CODECS = ThreadLocal.withInitial(GeometryCodecs::new);
+	
+	final WKTReader wktReader = new WKTReader(GEOMETRY_FACTORY);
+	
+	final WKTWriter wktWriter = new WKTWriter();
+	
+	/**
+	 * Decodes GeoJSON (LON/LAT) directly into LAT/LON
+	 */
+	final GeoJSONReader geoJSONReader = new GeoJSONReader(GEOMETRY_FACTORY, true);
+	
+	final WKBReader wkbReader = new WKBReader(GEOMETRY_FACTORY);
+	
+	final TWKBReader twkbReader = new TWKBReader(GEOMETRY_FACTORY);
+	
+	final GMLWriter gmlWriter = new GMLWriter();
+	
+	private GeometryCodecs()
+	{
+		gmlWriter.setNamespace(true);
+	}
+	
+	/**
+	 * @return the codecs of the current thread
+	 */
+	static GeometryCodecs get()
+	{
+		return CODECS.get();
+	}
+}
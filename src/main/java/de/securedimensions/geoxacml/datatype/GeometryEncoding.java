@@ -0,0 +1,162 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.datatype;
+
+/**
+ * The encodings of a Geometry AttributeValue as detected by the {@link GeometryValue.Factory}.
+ * <p>
+ * String encodings are classified by {@link #detect(String)} from the first character and a case insensitive 
+ * comparison of the keyword in place, without creating substrings. The number of values per encoding is available 
+ * from {@link GeometryValue.Factory#getEncodingCounts()}.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH. 
+ *
+ */
+public enum GeometryEncoding
+{
+	/**
+	 * The empty string, represented by an empty GeometryCollection
+	 */
+	EMPTY,
+	
+	/**
+	 * EWKT, the WKT is prefixed with <tt>SRID=&lt;code&gt;;</tt> or <tt>CRS=&lt;name&gt;;</tt>. 
+	 * The prefix may also be used with WKB and TWKB.
+	 */
+	EWKT,
+	
+	/**
+	 * WKT, the CRS is given by the <tt>crs</tt> attribute of the AttributeValue
+	 */
+	WKT,
+	
+	/**
+	 * WKB or EWKB, hex (starting with <tt>00</tt> or <tt>01</tt>) or base64 (starting with <tt>AA</tt> or <tt>AQ</tt>) encoded. 
+	 * Without embedded SRID, the CRS is given by the <tt>crs</tt> attribute of the AttributeValue.
+	 */
+	WKB,
+	
+	/**
+	 * Base64 encoded TWKB with the prefix <tt>TWKB:</tt>, 
+	 * the CRS is given by the <tt>crs</tt> attribute of the AttributeValue or an EWKT prefix
+	 */
+	TWKB,
+	
+	/**
+	 * <tt>NULL &lt;reason&gt;</tt>, represented by an empty Point
+	 */
+	NULL,
+	
+	/**
+	 * GeoJSON geometry object
+	 */
+	GEOJSON,
+	
+	/**
+	 * GML2 geometry element
+	 */
+	GML2,
+	
+	/**
+	 * GML3.2 geometry element
+	 */
+	GML3,
+	
+	/**
+	 * GML Null element
+	 */
+	GML_NULL,
+	
+	/**
+	 * Not a supported encoding
+	 */
+	UNKNOWN;
+	
+	private static final String SRID_PREFIX = "SRID=";
+	private static final String CRS_PREFIX = "CRS=";
+	
+	/**
+	 * Prefix of TWKB encodings
+	 */
+	public static final String TWKB_PREFIX = "TWKB:";
+	
+	/**
+	 * Detects the encoding of a String value. Returns {@link #UNKNOWN} for input that is too short or does not start 
+	 * with a supported keyword; the value itself is validated by the parser of the encoding.
+	 * 
+	 * @param value the String encoding of a geometry
+	 * @return the encoding, never null
+	 */
+	public static GeometryEncoding detect(final String value)
+	{
+		if (value.isEmpty())
+			return EMPTY;
+		
+		switch (value.charAt(0))
+		{
+			case 'S':
+			case 's':
+				return startsWith(value, SRID_PREFIX) ? EWKT : UNKNOWN;
+			case 'C':
+			case 'c':
+				return startsWith(value, CRS_PREFIX) ? EWKT : UNKNOWN;
+			case 'N':
+			case 'n':
+				return startsWith(value, "NULL") ? NULL : UNKNOWN;
+			case 'P':
+			case 'p':
+				return startsWith(value, "POINT") || startsWith(value, "POLYGON") ? WKT : UNKNOWN;
+			case 'L':
+			case 'l':
+				return startsWith(value, "LINESTRING") || startsWith(value, "LINEARRING") ? WKT : UNKNOWN;
+			case 'M':
+			case 'm':
+				return startsWith(value, "MULTIPOINT") || startsWith(value, "MULTILINESTRING") || startsWith(value, "MULTIPOLYGON") ? WKT : UNKNOWN;
+			case 'G':
+			case 'g':
+				return startsWith(value, "GEOMETRYCOLLECTION") ? WKT : UNKNOWN;
+			case '{':
+				return GEOJSON;
+			case '0':
+				// the first byte of WKB is the byte order 0 or 1
+				return startsWith(value, "00") || startsWith(value, "01") ? WKB : UNKNOWN;
+			case 'A':
+				return startsWith(value, "AA") || startsWith(value, "AQ") ? WKB : UNKNOWN;
+			case 'T':
+			case 't':
+				return startsWith(value, TWKB_PREFIX) ? TWKB : UNKNOWN;
+			default:
+				return UNKNOWN;
+		}
+	}
+	
+	/**
+	 * @param value an EWKT encoding
+	 * @return true if the EWKT has the <tt>SRID=</tt> prefix, false for the <tt>CRS=</tt> prefix
+	 */
+	static boolean hasSridPrefix(final String value)
+	{
+		return startsWith(value, SRID_PREFIX);
+	}
+	
+	private static boolean startsWith(final String value, final String keyword)
+	{
+		return value.regionMatches(true, 0, keyword, 0, keyword.length());
+	}
+}
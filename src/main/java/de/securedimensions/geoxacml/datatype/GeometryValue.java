@@ -18,47 +18,53 @@
 
 package de.securedimensions.geoxacml.datatype;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
+import java.io.Writer;
+import java.util.Base64;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
+import org.json.JSONObject;
 import org.ow2.authzforce.core.pdp.api.value.AttributeDatatype;
 import org.ow2.authzforce.core.pdp.api.value.BaseAttributeValueFactory;
 import org.ow2.authzforce.core.pdp.api.value.SimpleValue;
 
 import org.w3c.dom.Node;
-import org.wololo.jts2geojson.GeoJSONReader;
 import org.xml.sax.SAXException;
 
+import de.securedimensions.geoxacml.crs.CRSRegistry;
+import de.securedimensions.geoxacml.crs.Reprojection;
 import de.securedimensions.geoxacml.crs.SwapAxesCoordinateFilter;
+import de.securedimensions.geoxacml.index.GridCovering;
+import de.securedimensions.geoxacml.io.DOMSAXWalker;
+import de.securedimensions.geoxacml.io.geojson.GeoJSONReader;
 import de.securedimensions.geoxacml.io.gml3.GMLWriter;
 
 import net.sf.saxon.s9api.XPathCompiler;
 
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.algorithm.locate.SimplePointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
 import org.locationtech.jts.io.WKTReader;
-import org.locationtech.jts.io.WKTWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,6 +80,11 @@ import org.slf4j.LoggerFactory;
  * Used here for a geographic Authzforce datatype extension mechanism to plugin into into the PDP engine. 
  * With the combination of the GeoXACML Geometry functions extension, this allows to derive authorization decisions based on geographic conditions.
  *
+ * <p>
+ * A value does not change after construction: the axes are normalized on a copy of the geometry, the null reason is kept 
+ * in a final field and the envelope is computed eagerly. Values can therefore be shared by all PDP threads, as long as 
+ * the geometry returned by {@link #getUnderlyingValue()} is not modified. The prepared geometry is the only state 
+ * created later; it is published through a volatile field.
  * 
  * 
  * @author Andreas Matheus, Secure Dimensions GmbH. 
@@ -100,16 +111,33 @@ public final class GeometryValue extends SimpleValue<Geometry>
 	{
 
 
-		private static GeometryFactory gf;
-		private static SAXParserFactory fact;
-		private static TransformerFactory tf;
+		// GeometryFactory is immutable and can be shared by all threads
+		private static final GeometryFactory gf = GeometryCodecs.GEOMETRY_FACTORY;
+		
+		// The walker re-uses its buffers and is therefore kept per thread
+		private static final ThreadLocal<DOMSAXWalker> DOM_WALKERS = ThreadLocal.withInitial(DOMSAXWalker::new);
+		
+		// Number of values created per encoding, filled once and only read afterwards
+		private static final Map<GeometryEncoding, LongAdder> ENCODING_COUNTS = new EnumMap<GeometryEncoding, LongAdder>(GeometryEncoding.class);
+		static
+		{
+			for (GeometryEncoding encoding : GeometryEncoding.values())
+				ENCODING_COUNTS.put(encoding, new LongAdder());
+		}
+		
+		private static final QName CRS_ATTRIBUTE = new QName("http://www.opengis.net/geoxacml","crs");
+		
+		/**
+		 * Maximum total number of vertices of the geometries in the cache, 0 (default) disables the cache
+		 */
+		public static final String CACHE_MAX_WEIGHT_PROPERTY = "de.securedimensions.geoxacml.cache.maxWeight";
+		
+		// Cache of the values parsed from String encodings, shared by all factory instances
+		private static final GeometryCache CACHE = new GeometryCache(Long.getLong(CACHE_MAX_WEIGHT_PROPERTY, 0L));
 		
 		public Factory ()
 		{
 			super(DATATYPE);
-			gf = new GeometryFactory(new PrecisionModel());
-			fact = SAXParserFactory.newInstance();
-			tf = TransformerFactory.newInstance();
 		}
 				
 		public GeometryValue getInstance(Serializable value, Map<QName, String> otherXmlAttributes,
@@ -119,23 +147,110 @@ public final class GeometryValue extends SimpleValue<Geometry>
 			LOGGER.debug("getInstance(Serializable value): {}", value);
 			
 			/*
-			 * The encoding of a geometry must be String
+			 * A GeoJSON object in a JSON request may arrive already parsed
+			 */
+			if (value instanceof Map)
+				return getInstance((Map<?, ?>) value);
+			
+			/*
+			 * Otherwise the encoding of a geometry must be String
 			 */
 			if (!(value instanceof String))
 			{
-				LOGGER.error("Geometry encoding must be a String. But type is: " + value.getClass().getName());
-				throw new IllegalArgumentException("Geometry encoding must be a String. But type is: " + value.getClass().getName());
+				LOGGER.error("Geometry encoding must be a String or GeoJSON object. But type is: " + value.getClass().getName());
+				throw new IllegalArgumentException("Geometry encoding must be a String or GeoJSON object. But type is: " + value.getClass().getName());
 			}
 			
 			final String encoding = (String)value;
+			final GeometryEncoding type = GeometryEncoding.detect(encoding);
+			ENCODING_COUNTS.get(type).increment();
 			
+			// Zones are sent again and again with the same encoding, the parsed value can be re-used as it is not modified
+			final boolean cacheable = CACHE.isEnabled() && (type == GeometryEncoding.WKT || type == GeometryEncoding.EWKT || type == GeometryEncoding.GEOJSON 
+					|| type == GeometryEncoding.WKB || type == GeometryEncoding.TWKB);
+			// The crs attribute is only used for WKT, WKB and TWKB
+			final String crsAttribute = ((type == GeometryEncoding.WKT || type == GeometryEncoding.WKB || type == GeometryEncoding.TWKB) && otherXmlAttributes != null) 
+					? otherXmlAttributes.get(CRS_ATTRIBUTE) : null;
+			final GeometryCache.Key key = cacheable ? GeometryCache.key(encoding, crsAttribute) : null;
+			if (cacheable)
+			{
+				final GeometryValue cached = CACHE.get(key);
+				if (cached != null)
+					return cached;
+			}
+			
+			final GeometryValue result = parse(encoding, type, otherXmlAttributes);
+			if (cacheable)
+				CACHE.put(key, result);
+			
+			return result;
+		}
+		
+		/**
+		 * Creates the value from a GeoJSON geometry object that was already parsed by the JSON request parser, 
+		 * e.g. <tt>"Value": {"type": "Point", "coordinates": [-77.035278, 38.889444]}</tt> in the XACML JSON Profile.
+		 * The object is read directly, it is neither printed nor parsed again. These values are not cached.
+		 * 
+		 * @param geoJSON the GeoJSON object as tree of {@link Map}s, {@link List}s, numbers and strings
+		 * @return the geometry value
+		 * @throws IllegalArgumentException if the object is not a supported GeoJSON geometry
+		 */
+		public GeometryValue getInstance(final Map<?, ?> geoJSON) throws IllegalArgumentException
+		{
+			LOGGER.debug("getInstance(Map geoJSON)");
+			return getGeoJSONInstance(geoJSON);
+		}
+		
+		/**
+		 * Creates the value from a GeoJSON geometry object parsed by the AuthzForce XACML JSON request parser, which uses org.json.
+		 * 
+		 * @param geoJSON the GeoJSON object
+		 * @return the geometry value
+		 * @throws IllegalArgumentException if the object is not a supported GeoJSON geometry
+		 * @see #getInstance(Map)
+		 */
+		public GeometryValue getInstance(final JSONObject geoJSON) throws IllegalArgumentException
+		{
+			LOGGER.debug("getInstance(JSONObject geoJSON)");
+			return getGeoJSONInstance(geoJSON);
+		}
+		
+		private GeometryValue getGeoJSONInstance(final Object geoJSON) throws IllegalArgumentException
+		{
+			ENCODING_COUNTS.get(GeometryEncoding.GEOJSON).increment();
+			try
+			{
+				final GeoJSONReader reader = GeometryCodecs.get().geoJSONReader;
+				final Geometry g = geoJSON instanceof JSONObject ? reader.read((JSONObject) geoJSON) : reader.read((Map<?, ?>) geoJSON);
+				// The reader stores the positions as LAT/LON while decoding
+				g.setSRID(4326);
+				g.setUserData(null);
+				return new GeometryValue(g, false);
+			}
+			catch (ParseException e)
+			{
+				throw new IllegalArgumentException("ParseException: " + e.getMessage());
+			}
+			catch (RuntimeException e)
+			{
+				throw new IllegalArgumentException("RuntimeException: " + e.getMessage());
+			}
+		}
+		
+		private static String getEWKTCrsName(final String encoding, final String prefix)
+		{
+			return GeometryEncoding.hasSridPrefix(encoding) ? "EPSG:" + prefix.substring("SRID=".length()) : prefix.substring("CRS=".length());
+		}
+		
+		private GeometryValue parse(final String encoding, final GeometryEncoding type, final Map<QName, String> otherXmlAttributes)
+		{
 			try {
 				Geometry g = null;
 				// container to keep all the metadata for the Geometry
-				WKTReader wktReader = new WKTReader(gf);
+				final WKTReader wktReader = GeometryCodecs.get().wktReader;
 				String crsName = null;
 
-				if(encoding.isEmpty())
+				if(type == GeometryEncoding.EMPTY)
 				{
 					// The empty string is represented by an empty GeometryCollection
 					g = wktReader.read("GEOMETRYCOLLECTION EMPTY");
@@ -152,9 +267,7 @@ public final class GeometryValue extends SimpleValue<Geometry>
 					g.setUserData("inapplicable");
 					g.setSRID(0);
 				}
-				else if(
-						(encoding.substring(0, "SRID=".length()).equalsIgnoreCase("SRID=")) ||
-						(encoding.substring(0, "CRS=".length()).equalsIgnoreCase("CRS=")))
+				else if(type == GeometryEncoding.EWKT)
 				{
 					String[] st = encoding.split(";");
 					
@@ -163,52 +276,36 @@ public final class GeometryValue extends SimpleValue<Geometry>
 						throw new IllegalArgumentException("EWKT syntax error: ';' missing?");
 					}
 						
-					g = wktReader.read(st[1]);
-					
-					if (encoding.substring(0, "SRID=".length()).equalsIgnoreCase("SRID="))
-					{
-						crsName = "EPSG:" + st[0].substring("SRID=".length());
-					}
-					else if (encoding.substring(0, "CRS=".length()).equalsIgnoreCase("CRS="))
-					{
-						crsName = st[0].substring("CRS=".length());
-					}
+					// the prefix may also be used with the binary encodings
+					final GeometryEncoding bodyType = GeometryEncoding.detect(st[1]);
+					if (bodyType == GeometryEncoding.WKB || bodyType == GeometryEncoding.TWKB)
+						g = readBinary(st[1], bodyType);
 					else
-						throw new IllegalArgumentException("Geometry based on WKT without SRID or CRS cannot be instantiated");
+						g = wktReader.read(st[1]);
+					
+					crsName = getEWKTCrsName(encoding, st[0]);
 
-					g.setSRID(getSRID(crsName));
+					g.setSRID(CRSRegistry.getSRID(crsName));
 					g.setUserData(null);
 				}				
-				else if(
-						encoding.substring(0, "NULL".length()).equalsIgnoreCase("NULL")
-						)
+				else if(type == GeometryEncoding.NULL)
 				{
 					// Encoding NULL<space>null reason
-					final String nullReason = encoding.substring("NULL ".length());
+					final String nullReason = encoding.length() > "NULL ".length() ? encoding.substring("NULL ".length()) : "";
 					
 					// The Null geometry is represented by an empty Point
 					g = gf.createPoint();
 					g.setSRID(0);
 					g.setUserData(nullReason);
 				}
-				else if(
-						((encoding.length() >= "POINT".length()) && encoding.substring(0, "POINT".length()).equalsIgnoreCase("POINT")) ||
-						((encoding.length() >= "POLYGON".length()) &&encoding.substring(0, "POLYGON".length()).equalsIgnoreCase("POLYGON")) ||
-						((encoding.length() >= "LINESTRING".length()) &&encoding.substring(0, "LINESTRING".length()).equalsIgnoreCase("LINESTRING")) ||
-						((encoding.length() >= "LINEARRING".length()) &&encoding.substring(0, "LINEARRING".length()).equalsIgnoreCase("LINEARRING")) ||
-						((encoding.length() >= "MULTIPOLYGON".length()) &&encoding.substring(0, "MULTIPOLYGON".length()).equalsIgnoreCase("MULTIPOLYGON")) ||
-						((encoding.length() >= "MULTILIPOINT".length()) &&encoding.substring(0, "MULTILIPOINT".length()).equalsIgnoreCase("MULTILIPOINT")) ||
-						((encoding.length() >= "MULTILINESTRING".length()) &&encoding.substring(0, "MULTILINESTRING".length()).equalsIgnoreCase("MULTILINESTRING")) ||
-						((encoding.length() >= "GEOMETRYCOLLECTION".length()) &&encoding.substring(0, "GEOMETRYCOLLECTION".length()).equalsIgnoreCase("GEOMETRYCOLLECTION"))
-					)
+				else if(type == GeometryEncoding.WKT)
 				{
 					if (otherXmlAttributes == null)
 						throw new IllegalArgumentException("WKT geometry requires CRS definition as attribute in AttributeValue!");
 					
 					LOGGER.debug("otherXmlAttributes: " + otherXmlAttributes);
 					
-					QName crsAttr = new QName("http://www.opengis.net/geoxacml","crs");
-					crsName = otherXmlAttributes.get(crsAttr);
+					crsName = otherXmlAttributes.get(CRS_ATTRIBUTE);
 					
 					if (crsName == null)
 						throw new IllegalArgumentException("WKT geometry encoding with no crs defined!");
@@ -221,15 +318,36 @@ public final class GeometryValue extends SimpleValue<Geometry>
 					}
 					else
 					{
-						g.setSRID(getSRID(crsName));
+						g.setSRID(CRSRegistry.getSRID(crsName));
 						g.setUserData(null);
 					}
 				}
-				else if (encoding.substring(0, "{".length()).equalsIgnoreCase("{")) {
+				else if(type == GeometryEncoding.WKB || type == GeometryEncoding.TWKB)
+				{
+					g = readBinary(encoding, type);
+					if (g.isEmpty())
+					{
+						g.setSRID(0);
+						g.setUserData("inapplicable");
+					}
+					else
+					{
+						// EWKB contains the SRID, otherwise it must be defined like for WKT
+						if (g.getSRID() == 0)
+						{
+							crsName = otherXmlAttributes == null ? null : otherXmlAttributes.get(CRS_ATTRIBUTE);
+							if (crsName == null)
+								throw new IllegalArgumentException(type + " geometry encoding without SRID requires CRS definition as attribute in AttributeValue!");
+							
+							g.setSRID(CRSRegistry.getSRID(crsName));
+						}
+						g.setUserData(null);
+					}
+				}
+				else if (type == GeometryEncoding.GEOJSON) {
 					try
 					{
-						GeoJSONReader geojsonReader = new GeoJSONReader();
-						g = geojsonReader.read(encoding);
+						g = GeometryCodecs.get().geoJSONReader.read(encoding);
 
 						/* 
 						 * Axis order as defined in IETF 7946: LON/LAT
@@ -241,31 +359,45 @@ public final class GeometryValue extends SimpleValue<Geometry>
 						   urn:ogc:def:crs:OGC::CRS84."[https://tools.ietf.org/html/rfc7946#section-4]
 						 * 
 						 */
-						// The internal code -4326 is used in the constructor to correct the axes order
-						g.setSRID(-4326);
+						// The reader stores the positions as LAT/LON while decoding, so no normalization pass is required
+						g.setSRID(4326);
 						g.setUserData(null);
 					}
 					catch (RuntimeException e) {
-						e.printStackTrace();
+						LOGGER.debug("GeoJSON geometry encoding cannot be parsed", e);
 						throw new IllegalArgumentException("RuntimeException: " + e.getMessage());
 					}
 				}
 				else
 					throw new IllegalArgumentException("Unknown geometry encoding");
 								
-				return new GeometryValue(g);
+				return new GeometryValue(g, false);
 			}
 			catch (ParseException e) {
-				e.printStackTrace();
+				LOGGER.debug("{} geometry encoding cannot be parsed", type, e);
 				throw new IllegalArgumentException("ParseException: " + e.getMessage());
 			}
 			catch (RuntimeException e) {
-				e.printStackTrace();
+				LOGGER.debug("{} geometry encoding cannot be parsed", type, e);
 				throw new IllegalArgumentException("RuntimeException: " + e.getMessage());
 			} 
 			
 		}
 		
+		/*
+		 * Decodes the hex or base64 encoded WKB or the base64 encoded TWKB
+		 */
+		private static Geometry readBinary(final String encoding, final GeometryEncoding type) throws ParseException
+		{
+			final GeometryCodecs codecs = GeometryCodecs.get();
+			if (type == GeometryEncoding.TWKB)
+				return codecs.twkbReader.read(Base64.getMimeDecoder().decode(encoding.substring(GeometryEncoding.TWKB_PREFIX.length())));
+			
+			// hex encoded WKB starts with the byte order 00 or 01, base64 with AA or AQ
+			final byte[] wkb = encoding.charAt(0) == '0' ? WKBReader.hexToBytes(encoding.trim()) : Base64.getMimeDecoder().decode(encoding);
+			return codecs.wkbReader.read(wkb);
+		}
+		
 		@Override
 		public GeometryValue getInstance(final List<Serializable> content, final Map<QName, String> otherXmlAttributes, final XPathCompiler xPathCompiler) throws IllegalArgumentException
 		{
@@ -320,6 +452,18 @@ public final class GeometryValue extends SimpleValue<Geometry>
 					}
 				}
 				 
+				// A GeoJSON object parsed by the JSON request parser
+				if (x instanceof JSONObject)
+				{
+					LOGGER.debug("Geometry using GeoJSON object");
+					return getInstance((JSONObject) x);
+				}
+				if (x instanceof Map)
+				{
+					LOGGER.debug("Geometry using GeoJSON object");
+					return getInstance((Map<?, ?>) x);
+				}
+				 
 				// Test if the geometry has a GML encoding. Then, the node 'x' should be an implementation of Node...
 				if (x instanceof Node)
 				{
@@ -332,46 +476,33 @@ public final class GeometryValue extends SimpleValue<Geometry>
 					// Dealing with GML Null geometries
 					if (gmlNode.getLocalName().equalsIgnoreCase("Null"))
 					{
+						ENCODING_COUNTS.get(GeometryEncoding.GML_NULL).increment();
+
 						// The Null geometry is represented by an empty Point
 						g = gf.createPoint();
 						g.setSRID(0);
 						g.setUserData(gmlNode.getTextContent());
 
-						return new GeometryValue(g);
+						return new GeometryValue(g, false);
 					}
 
 					// We have to process a real GML geometry
-					ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-					Source xmlSource = new DOMSource(gmlNode);
-					Result outputTarget = new StreamResult(outputStream);
-					tf.newTransformer().transform(xmlSource, outputTarget);
-					InputStream is = new ByteArrayInputStream(outputStream.toByteArray());
-
+					final GeometryEncoding gmlType;
 					if (namespace.equalsIgnoreCase("http://www.opengis.net/gml"))
 					{
-						// GML2
-						SAXParser parser = fact.newSAXParser();
-
-						org.locationtech.jts.io.gml2.GMLHandler gh = new org.locationtech.jts.io.gml2.GMLHandler(gf,null);
-						parser.parse(is, gh);
-						g = gh.getGeometry();
-
+						gmlType = GeometryEncoding.GML2;
 					}
 					else if (namespace.equalsIgnoreCase("http://www.opengis.net/gml/3.2"))
 					{
-						// GML3
-						SAXParser parser = fact.newSAXParser();
-						
-						de.securedimensions.geoxacml.io.gml3.GMLHandler gh = new de.securedimensions.geoxacml.io.gml3.GMLHandler(gf,null);
-						parser.parse(is, gh);
-						g = gh.getGeometry();
-
+						gmlType = GeometryEncoding.GML3;
 					}
 					else
 					{
 						// no other encoding supported...
+						ENCODING_COUNTS.get(GeometryEncoding.UNKNOWN).increment();
 						throw new IllegalArgumentException("Namespace is neither GML2 nor GML3");						
 					}
+					ENCODING_COUNTS.get(gmlType).increment();
 	                
 					// We need to get the CRS name
                     Node srsNode = gmlNode.getAttributes().getNamedItem("srsName");
@@ -386,39 +517,146 @@ public final class GeometryValue extends SimpleValue<Geometry>
                     		LOGGER.error("crs from GML element missing");
                     		throw new IllegalArgumentException("crs from GML element missing");
                     }
-                                        
-                    g.setSRID(getSRID(crsName));
-                    g.setUserData(null);
+                    final int srid = CRSRegistry.getSRID(crsName);
 
-                    return new GeometryValue(g);
+                    return new GeometryValue(parseGML(gmlNode, gmlType, srid), false);
 	                    
 				}
 				else
 				{
+					ENCODING_COUNTS.get(GeometryEncoding.UNKNOWN).increment();
 					throw new IllegalArgumentException("Unknown Geometry encoding");
 				}
-			} catch (TransformerFactoryConfigurationError e) {
-				throw new IllegalArgumentException("TransformerFactoryConfigurationError: " + e.getMessage());
 			} catch (RuntimeException e) {
 				throw new IllegalArgumentException("RuntimeException: " + e.getMessage());
-			} catch (TransformerConfigurationException e) {
-				throw new IllegalArgumentException("TransformerFactoryConfigurationError: " + e.getMessage());
-			} catch (TransformerException e) {
-				throw new IllegalArgumentException("TransformerException: " + e.getMessage());
-			} catch (ParserConfigurationException e) {
-				throw new IllegalArgumentException("ParserConfigurationException: " + e.getMessage());
-			} catch (SAXException e) {
-				throw new IllegalArgumentException("SAXException: " + e.getMessage());
-			} catch (IOException e) {
-				throw new IllegalArgumentException("IOException: " + e.getMessage());
 			} 
 		}
+		
+		/*
+		 * Parses the GML2 or GML3 geometry: the DOM is reported as SAX events directly to the GML handler
+		 */
+		private static Geometry parseGML(final Node gmlNode, final GeometryEncoding type, final int srid)
+		{
+			final Geometry g;
+			int normalizedSrid = srid;
+			try
+			{
+				if (type == GeometryEncoding.GML2)
+				{
+					org.locationtech.jts.io.gml2.GMLHandler gh = new org.locationtech.jts.io.gml2.GMLHandler(gf,null);
+					DOM_WALKERS.get().walk(gmlNode, gh);
+					g = gh.getGeometry();
+				}
+				else
+				{
+					de.securedimensions.geoxacml.io.gml3.GMLHandler gh = new de.securedimensions.geoxacml.io.gml3.GMLHandler(gf,null);
+					// CRS84 coordinates are stored as LAT/LON while decoding, so no normalization pass is required
+					if (srid == CRSRegistry.CRS84)
+					{
+						gh.setSwapXY(true);
+						normalizedSrid = 4326;
+					}
+					DOM_WALKERS.get().walk(gmlNode, gh);
+					g = gh.getGeometry();
+				}
+			}
+			catch (SAXException e) {
+				throw new IllegalArgumentException("SAXException: " + e.getMessage());
+			}
+			
+			g.setSRID(normalizedSrid);
+			g.setUserData(null);
+			return g;
+		}
+		
+		/**
+		 * @return the cache of values parsed from String encodings, see {@link #CACHE_MAX_WEIGHT_PROPERTY}
+		 */
+		public static GeometryCache getCache()
+		{
+			return CACHE;
+		}
+		
+		/**
+		 * @return the number of Geometry values per encoding requested from any factory since startup, including invalid values
+		 */
+		public static Map<GeometryEncoding, Long> getEncodingCounts()
+		{
+			final Map<GeometryEncoding, Long> counts = new EnumMap<GeometryEncoding, Long>(GeometryEncoding.class);
+			for (Map.Entry<GeometryEncoding, LongAdder> entry : ENCODING_COUNTS.entrySet())
+				counts.put(entry.getKey(), entry.getValue().sum());
+			
+			return counts;
+		}
 	}
 		
 	public static final Factory FACTORY = new Factory();
 	
+	/**
+	 * Number of evaluations by topological functions after which the geometry gets prepared, see {@link #countUse()}
+	 */
+	private static final int PREPARE_THRESHOLD = 2;
+	
+	/**
+	 * If <tt>true</tt>, the GML of a value is kept when it is printed the second time, default is <tt>false</tt>
+	 */
+	public static final String MEMOIZE_GML_PROPERTY = "de.securedimensions.geoxacml.gml.memoize";
+	
+	private static final boolean MEMOIZE_GML = Boolean.getBoolean(MEMOIZE_GML_PROPERTY);
+	
+	/**
+	 * The GML of a value that was printed repeatedly, see {@link #MEMOIZE_GML_PROPERTY}
+	 */
+	private transient volatile String gml = null;
+	
+	/**
+	 * Number of times this value was printed. Updated without synchronization as it is only a hint.
+	 */
+	private transient int printCount = 0;
+
+	/**
+	 * The prepared geometry (indexed edges, cached envelope) is built on demand and kept for the lifetime of this value.
+	 * Policy geometries are long living and tested against many request geometries.
+	 */
+	private transient volatile PreparedGeometry preparedGeometry = null;
+	
+	/**
+	 * Index of the edges of a polygonal geometry, used to locate points. Built on demand like the prepared geometry.
+	 */
+	private transient volatile IndexedPointInAreaLocator pointLocator = null;
+	
+	/**
+	 * Raster approximation of large polygonal policy geometries, see {@link #getGridCovering()}
+	 */
+	private transient volatile GridCovering gridCovering = null;
+	
+	/**
+	 * Maximum number of transformed variants kept per value
+	 */
+	private static final int MAX_PROJECTIONS = 8;
+	
+	/**
+	 * Variants of this value transformed into other CRS by SRID, see {@link #reproject(int)}. Created on demand.
+	 */
+	private transient volatile ConcurrentMap<Integer, GeometryValue> projections = null;
+	
+	/**
+	 * Number of times this value was evaluated by a topological function. Updated without synchronization as it is only a hint.
+	 */
+	private transient int useCount = 0;
+	
+	/**
+	 * The reason of a Null geometry (GML Null or <tt>NULL &lt;reason&gt;</tt>), null for all other geometries
+	 */
+	private final String nullReason;
+	
 	/**
 	 * Returns a new <code>GeometryValue</code> that represents the name indicated by the <code>Geometry</code> provided.
+	 * <p>
+	 * The geometry is not modified; if the axes must be normalized, a copy is normalized. 
+	 * Otherwise the geometry becomes part of this value and must not be modified by the caller afterwards, 
+	 * as values are shared between threads (e.g. policy constants and cached values).
+	 * 
 	 * @param val
 	 *            a geometry instance
 	 * @throws java.lang.IllegalArgumentException
@@ -426,8 +664,26 @@ public final class GeometryValue extends SimpleValue<Geometry>
 	 */
 	public GeometryValue(Geometry g) throws IllegalArgumentException
 	{
-		super(g);
-									
+		this(g, true);
+	}
+	
+	/**
+	 * @param g a geometry instance
+	 * @param copyOnNormalize false if the geometry was created by the factory and can be normalized in place
+	 */
+	private GeometryValue(Geometry g, boolean copyOnNormalize)
+	{
+		super(normalize(g, copyOnNormalize));
+		
+		this.nullReason = value.getUserData() instanceof String ? (String) value.getUserData() : null;
+		
+		// JTS computes the envelope lazily and caches it without synchronization. 
+		// Computed here it is safely published with this value and never written again.
+		value.getEnvelopeInternal();
+	}
+	
+	private static Geometry normalize(Geometry g, boolean copyOnNormalize)
+	{
 		/* 
 		 * GEOMETRY NORMALIZATION
 		 * 
@@ -436,24 +692,238 @@ public final class GeometryValue extends SimpleValue<Geometry>
 		 * So for example for a geometry encoded with 
 		 *  - 'EPSG:4326' will not be processed as this implementation ASSUMES that the axis order is LAT/LON
 		 *  - 'urn:ogc:def:crs:OGC::CRS84' (LON/LAT) will have the axis swapped to make it LAT/LON
+		 *    (GML3 and GeoJSON are already swapped by the decoder and arrive here with SRID 4326)
 		 *  - '' (southing) will have the LAT value inverted
 		 *  - '' (westing) will have the LON value inverted
 		 */
-		if (g.getSRID() == -4326)
+		if (g.getSRID() == CRSRegistry.CRS84)
 		{
-			value.apply(new SwapAxesCoordinateFilter());
-			value.geometryChanged();
-			value.setSRID(4326);
+			final Geometry normalized = copyOnNormalize ? g.copy() : g;
+			normalized.apply(new SwapAxesCoordinateFilter());
+			normalized.setSRID(4326);
+			return normalized;
 		}
+		
+		return g;
+	}
+	
+	/**
+	 * @return the reason of a Null geometry, e.g. <tt>inapplicable</tt>, or null if this value is not a Null geometry
+	 */
+	public String getNullReason()
+	{
+		return nullReason;
+	}
 
+	/**
+	 * Returns the prepared geometry for this value. It is created on first access.
+	 * 
+	 * @return the prepared geometry
+	 */
+	public PreparedGeometry getPreparedGeometry()
+	{
+		PreparedGeometry pg = preparedGeometry;
+		if (pg == null)
+		{
+			// Two threads may prepare concurrently; both results are equivalent and the last one wins
+			pg = PreparedGeometryFactory.prepare(value);
+			preparedGeometry = pg;
+			LOGGER.debug("Prepared geometry of type {} with {} vertices", pg.getGeometry().getGeometryType(), pg.getGeometry().getNumPoints());
+		}
+		return pg;
+	}
+	
+	/**
+	 * Returns the point locator for this value. It is created on first access and only available for polygonal geometries.
+	 * 
+	 * @return the point locator
+	 * @throws IllegalStateException if the geometry is not polygonal
+	 */
+	public PointOnGeometryLocator getPointLocator()
+	{
+		IndexedPointInAreaLocator locator = pointLocator;
+		if (locator == null)
+		{
+			if (!(value instanceof Polygonal))
+				throw new IllegalStateException("Point locator requires a polygonal geometry but type is: " + value.getGeometryType());
+			
+			// Like the prepared geometry, concurrent creation is harmless; the index itself is built on the first locate
+			locator = new IndexedPointInAreaLocator(value);
+			pointLocator = locator;
+		}
+		return locator;
+	}
+	
+	/**
+	 * Returns the grid covering of this value, building it on first access if the geometry is polygonal 
+	 * and large enough (see {@link GridCovering#isApplicable(Geometry)}). 
+	 * It is intended for geometries which are used for many decisions, like the constants of a policy.
+	 * 
+	 * @return the grid covering or null if not applicable
+	 */
+	public GridCovering getGridCovering()
+	{
+		GridCovering grid = gridCovering;
+		if (grid == null && GridCovering.isApplicable(value))
+		{
+			grid = GridCovering.build(value, getPointLocator());
+			gridCovering = grid;
+		}
+		return grid;
+	}
+	
+	/**
+	 * Determines the location of a point relative to this polygonal geometry. 
+	 * If the value has a grid covering, points in cells fully inside or outside are located by the covering. 
+	 * Repeatedly used values (see {@link #usePreparedGeometry()}) use an indexed locator, others a linear scan of the edges.
+	 * 
+	 * @param p the point
+	 * @return the {@link org.locationtech.jts.geom.Location} of the point: interior, boundary or exterior
+	 * @throws IllegalStateException if the geometry is not polygonal
+	 */
+	public int locate(Coordinate p)
+	{
+		final GridCovering grid = gridCovering;
+		if (grid != null)
+		{
+			final byte cell = grid.classify(p);
+			if (cell == GridCovering.INSIDE)
+				return Location.INTERIOR;
+			if (cell == GridCovering.OUTSIDE)
+				return Location.EXTERIOR;
+		}
+		
+		if (pointLocator != null || usePreparedGeometry())
+			return getPointLocator().locate(p);
+		
+		if (!(value instanceof Polygonal))
+			throw new IllegalStateException("Point location requires a polygonal geometry but type is: " + value.getGeometryType());
 		
+		return SimplePointInAreaLocator.locate(p, value);
+	}
+	
+	/**
+	 * Returns this value transformed into another CRS (see {@link Reprojection}). 
+	 * The transformed values are kept, so the prepared geometry of a policy geometry is also kept for each CRS used by the requests.
+	 * 
+	 * @param srid the SRID of the target CRS
+	 * @return the transformed value, or this value if it already uses the CRS
+	 * @throws IllegalArgumentException if the geometry cannot be transformed
+	 */
+	public GeometryValue reproject(int srid) throws IllegalArgumentException
+	{
+		final Geometry g = value;
+		if (g.getSRID() == srid)
+			return this;
+		
+		ConcurrentMap<Integer, GeometryValue> variants = projections;
+		if (variants == null)
+		{
+			// concurrent creation only loses a transformed variant
+			variants = new ConcurrentHashMap<Integer, GeometryValue>();
+			projections = variants;
+		}
+		
+		GeometryValue variant = variants.get(srid);
+		if (variant == null)
+		{
+			variant = new GeometryValue(Reprojection.transform(g, srid), false);
+			if (variants.size() < MAX_PROJECTIONS)
+			{
+				final GeometryValue existing = variants.putIfAbsent(srid, variant);
+				if (existing != null)
+					variant = existing;
+			}
+		}
+		return variant;
+	}
+	
+	/**
+	 * Records that a topological function evaluates this value. It is called once per argument and evaluation, 
+	 * so that a value used by a single evaluation is not prepared.
+	 */
+	public void countUse()
+	{
+		if (preparedGeometry == null && useCount < PREPARE_THRESHOLD)
+			useCount++;
+	}
+	
+	/**
+	 * Tells whether a topological function should evaluate this value using the prepared geometry.
+	 * This is the case if the geometry is already prepared or if the value was evaluated repeatedly (see {@link #countUse()}),
+	 * which typically applies to geometries defined in the policy.
+	 * 
+	 * @return true if the prepared geometry should be used
+	 */
+	public boolean usePreparedGeometry()
+	{
+		return preparedGeometry != null || useCount >= PREPARE_THRESHOLD;
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * Hash of the coordinates, computed on first use. 0 if not yet computed.
+	 */
+	private int hash = 0;
+	
+	/**
+	 * Accumulates the hash over the X/Y ordinates of all coordinate sequences in the order used by equalsExact
+	 */
+	private static final class CoordinateHash implements CoordinateSequenceFilter
+	{
+		private int hash;
+		
+		private CoordinateHash(int seed)
+		{
+			this.hash = seed;
+		}
+		
+		@Override
+		public void filter(CoordinateSequence seq, int i)
+		{
+			hash = 31 * hash + hash(seq.getX(i));
+			hash = 31 * hash + hash(seq.getY(i));
+		}
+
+		private static int hash(double d)
+		{
+			// -0.0 == 0.0 for equalsExact
+			final long bits = Double.doubleToLongBits(d == 0.0 ? 0.0 : d);
+			return (int) (bits ^ (bits >>> 32));
+		}
+		
+		@Override
+		public boolean isDone()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean isGeometryChanged()
+		{
+			return false;
+		}
+	}
+	
+	/** {@inheritDoc} 
+	 * <p>
+	 * The JTS Geometry hash code is based on the envelope only, so overlapping geometries collide. 
+	 * This hash code includes the SRID, the type and all X/Y coordinates. It is computed once.
+	 */
 	@Override
 	public int hashCode()
 	{
-		return value.hashCode();
+		int h = hash;
+		if (h == 0)
+		{
+			final CoordinateHash coordinateHash = new CoordinateHash(31 * value.getSRID() + value.getGeometryType().hashCode());
+			value.apply(coordinateHash);
+			h = coordinateHash.hash;
+			if (h == 0)
+				h = 1;
+			// racy single-check: concurrent threads compute the same value
+			hash = h;
+		}
+		return h;
 	}
 
 	/*
@@ -477,62 +947,76 @@ public final class GeometryValue extends SimpleValue<Geometry>
 			return false;
 		}
 
-		Geometry g1 = this.getUnderlyingValue();
-		Geometry g2 = ((GeometryValue) obj).getUnderlyingValue();
+		final GeometryValue other = (GeometryValue) obj;
+		Geometry g1 = this.value;
+		Geometry g2 = other.value;
 
+		// Cheap tests first, bag functions compare many values that are not equal
+		if (g1.getSRID() != g2.getSRID() || g1.getClass() != g2.getClass())
+		{
+			return false;
+		}
+		
+		if (g1.getNumPoints() != g2.getNumPoints() || hashCode() != other.hashCode())
+		{
+			return false;
+		}
+		
 		// Test for exact equal - NOT for topological equals. That is done via the geometry-equals function.
 		// This function is the basic primitive that is used e.g. with Bag/Set functions
 		return g1.equalsExact(g2);
 	}
 
-	private static int getSRID(String srsName) throws IllegalArgumentException
+	/** {@inheritDoc} */
+	@Override
+	public String printXML()
 	{
-		
-		String []parts = srsName.split("[/,:]");
-		String srsCode = parts[parts.length-1];
-		
-		if (srsCode.equalsIgnoreCase("CRS84"))
-			return -4326;
-		else if (srsCode.equalsIgnoreCase("84"))
-			return -4326;
-		else if (srsCode.equalsIgnoreCase("WGS84"))
-			return -4326;
-		else	
+		String xml = gml;
+		if (xml == null)
 		{
-			int srid = 0;
-			try {
-				srid = Integer.valueOf(srsCode); 
-				return srid;
-			}
-			catch (NumberFormatException e)
-			{
-				throw new IllegalArgumentException("Unknown CRS: " + srsName);
-			}
+			xml = gmlWriter().write(value);
+			
+			// The value does not change, so the GML of values in obligations or advice can be re-used
+			if (MEMOIZE_GML && ++printCount >= 2)
+				gml = xml;
 		}
+		return xml;
 	}
-
-	/** {@inheritDoc} */
-	@Override
-	public String printXML()
+	
+	/**
+	 * Writes the GML3 encoding of this value directly into a writer, e.g. the response, without creating a String first.
+	 * 
+	 * @param out the writer, it is flushed but not closed
+	 * @throws IOException if writing fails
+	 */
+	public void writeXML(Writer out) throws IOException
+	{
+		final String xml = gml;
+		if (xml != null)
+		{
+			out.write(xml);
+			out.flush();
+			return;
+		}
+		
+		gmlWriter().write(value, out);
+	}
+	
+	private GMLWriter gmlWriter()
 	{
-		final Geometry g = this.getUnderlyingValue();
-
 		// GML3
-		GMLWriter writer = new GMLWriter();
-		writer.setNamespace(true);
-		writer.setSrsName("EPSG:" + g.getSRID());
-		return writer.write(g);
+		final GMLWriter writer = GeometryCodecs.get().gmlWriter;
+		writer.setSrsName("EPSG:" + value.getSRID());
+		return writer;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public String toString()
 	{
-		WKTWriter wkt = new WKTWriter();
-		
-		final Geometry g = this.getUnderlyingValue();
+		final Geometry g = this.value;
 
-		return "SRID=" + String.valueOf(g.getSRID()) + ";" + wkt.write(g);
+		return "SRID=" + String.valueOf(g.getSRID()) + ";" + GeometryCodecs.get().wktWriter.write(g);
 	}
 	
 	@Override
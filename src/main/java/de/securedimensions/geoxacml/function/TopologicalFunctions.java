@@ -19,10 +19,21 @@
 package de.securedimensions.geoxacml.function;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygonal;
+
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.expression.Expression;
 import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunctionCall;
@@ -36,6 +47,7 @@ import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.securedimensions.geoxacml.crs.Reprojection;
 import de.securedimensions.geoxacml.datatype.GeometryValue;
 
 /**
@@ -48,288 +60,584 @@ public final class TopologicalFunctions {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TopologicalFunctions.class);
 	
+	private static final ConcurrentMap<String, Counters> COUNTERS = new ConcurrentHashMap<String, Counters>();
+	
 	/**
-	 * <p>
-	 * Used here as AuthzForce function extension mechanism as plugging a topological test functions into the PDP engine.
+	 * Evaluation counters of a topological function. 
+	 * They allow to monitor how often the result could be derived from the envelopes of the geometries.
 	 */
+	public static final class Counters
+	{
+		private final LongAdder evaluations = new LongAdder();
+		private final LongAdder envelopeShortCircuits = new LongAdder();
+		private final LongAdder pointInAreaTests = new LongAdder();
+		private final LongAdder reprojections = new LongAdder();
+		
+		private Counters()
+		{
+		}
+		
+		/**
+		 * @return number of topological tests executed (geometries with identical CRS or transformed into the same CRS)
+		 */
+		public long getEvaluations()
+		{
+			return evaluations.sum();
+		}
+		
+		/**
+		 * @return number of topological tests answered by comparing the envelopes only
+		 */
+		public long getEnvelopeShortCircuits()
+		{
+			return envelopeShortCircuits.sum();
+		}
+		
+		/**
+		 * @return number of topological tests of a point and a polygonal geometry answered by locating the point
+		 */
+		public long getPointInAreaTests()
+		{
+			return pointInAreaTests.sum();
+		}
+		
+		/**
+		 * @return number of topological tests of geometries with different CRS for which one geometry was transformed
+		 */
+		public long getReprojections()
+		{
+			return reprojections.sum();
+		}
+		
+		@Override
+		public String toString()
+		{
+			return "evaluations=" + getEvaluations() + ", envelopeShortCircuits=" + getEnvelopeShortCircuits() + ", pointInAreaTests=" + getPointInAreaTests() + ", reprojections=" + getReprojections();
+		}
+	}
 	
-	public final static class Equals extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	/**
+	 * Returns the evaluation counters for the given function
+	 * 
+	 * @param functionId identifier of the topological function, e.g. {@link Within#ID}
+	 * @return the counters or null if the function was not instantiated
+	 */
+	public static Counters getCounters(final String functionId)
 	{
-		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-equals";
+		return COUNTERS.get(functionId);
+	}
+	
+	/**
+	 * @return the evaluation counters of all instantiated topological functions by function identifier
+	 */
+	public static Map<String, Counters> getCounters()
+	{
+		return Collections.unmodifiableMap(COUNTERS);
+	}
+	
+	/**
+	 * Base class for all topological test functions. It takes care of the argument checking and the CRS comparison.
+	 * The actual test is implemented by the sub-classes which may use the prepared geometry of an argument.
+	 * 
+	 * @see GeometryValue#usePreparedGeometry()
+	 */
+	static abstract class TopologicalFunction extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	{
+		private final String functionId;
+		
+		private final Counters counters;
 
-		public Equals()
+		TopologicalFunction(final String functionId)
+		{
+			super(functionId, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			this.functionId = functionId;
+			this.counters = COUNTERS.computeIfAbsent(functionId, id -> new Counters());
+		}
+
+		/**
+		 * Tests whether the geometries can fulfill the topological relation based on their envelopes. 
+		 * If not, the result is {@link #getEnvelopeShortCircuitResult()} and no further test is required.
+		 * 
+		 * @param e1 envelope of the first geometry argument
+		 * @param e2 envelope of the second geometry argument
+		 * @return false if the relation is impossible for the given envelopes
+		 */
+		protected abstract boolean isEnvelopeCompatible(Envelope e1, Envelope e2);
+		
+		/**
+		 * @return the result of the test if {@link #isEnvelopeCompatible(Envelope, Envelope)} is false
+		 */
+		protected boolean getEnvelopeShortCircuitResult()
+		{
+			return false;
+		}
+
+		/**
+		 * Executes the topological test on two geometries with identical SRID
+		 * 
+		 * @param gv1 first geometry argument
+		 * @param gv2 second geometry argument
+		 * @return the result of the test
+		 */
+		protected abstract boolean eval(GeometryValue gv1, GeometryValue gv2);
+
+		/**
+		 * Checks the arguments and executes the topological test
+		 * 
+		 * @param gv1 first geometry argument
+		 * @param gv2 second geometry argument
+		 * @return the result of the test, false if the geometries use different CRS and {@link Reprojection} is disabled
+		 */
+		private BooleanValue evaluateArguments(final GeometryValue gv1, final GeometryValue gv2) throws IndeterminateEvaluationException
+		{
+			return evaluateArguments(gv1, gv2, false);
+		}
+		
+		/**
+		 * @param reprojectFirst true if the first argument is transformed into the CRS of the second if they differ, 
+		 *        false for the opposite. The transformed variants are kept by the value, so this should be the policy constant.
+		 */
+		private BooleanValue evaluateArguments(GeometryValue gv1, GeometryValue gv2, final boolean reprojectFirst) throws IndeterminateEvaluationException
+		{
+			Geometry g1 = gv1.getUnderlyingValue();
+			Geometry g2 = gv2.getUnderlyingValue();
+			
+			if (g1.getSRID() != g2.getSRID())
+			{
+				// Null and empty geometries have no CRS
+				if (!Reprojection.isEnabled() || g1.getSRID() <= 0 || g2.getSRID() <= 0 || g1.isEmpty() || g2.isEmpty())
+					return BooleanValue.FALSE;
+				
+				try
+				{
+					if (reprojectFirst)
+					{
+						gv1 = gv1.reproject(g2.getSRID());
+						g1 = gv1.getUnderlyingValue();
+					}
+					else
+					{
+						gv2 = gv2.reproject(g1.getSRID());
+						g2 = gv2.getUnderlyingValue();
+					}
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new IndeterminateEvaluationException("Function " + functionId + ": " + e.getMessage(), XacmlStatusCode.PROCESSING_ERROR.name());
+				}
+				counters.reprojections.increment();
+			}
+			
+			counters.evaluations.increment();
+			
+			// The envelopes are cached by JTS, so this is a cheap rejection before the relate computation
+			if (!isEnvelopeCompatible(g1.getEnvelopeInternal(), g2.getEnvelopeInternal()))
+			{
+				counters.envelopeShortCircuits.increment();
+				return getEnvelopeShortCircuitResult() ? BooleanValue.TRUE : BooleanValue.FALSE;
+			}
+			
+			// Only here the geometries are used, the tests of the sub-classes may probe both arguments
+			gv1.countUse();
+			gv2.countUse();
+			
+			// A position against a zone: locating the point avoids the generic relate computation
+			if (this instanceof PointInAreaFunction)
+			{
+				final PointInAreaFunction pointInArea = (PointInAreaFunction) this;
+				if (g1 instanceof Point && g2 instanceof Polygonal && pointInArea.isPointInAreaTest(true) && !g1.isEmpty() && !g2.isEmpty())
+				{
+					counters.pointInAreaTests.increment();
+					return pointInArea.evalPointInArea(gv2.locate(g1.getCoordinate())) ? BooleanValue.TRUE : BooleanValue.FALSE;
+				}
+				
+				if (g2 instanceof Point && g1 instanceof Polygonal && pointInArea.isPointInAreaTest(false) && !g2.isEmpty() && !g1.isEmpty())
+				{
+					counters.pointInAreaTests.increment();
+					return pointInArea.evalPointInArea(gv1.locate(g2.getCoordinate())) ? BooleanValue.TRUE : BooleanValue.FALSE;
+				}
+			}
+			
+			return eval(gv1, gv2) ? BooleanValue.TRUE : BooleanValue.FALSE;
+		}
+		
+		private void checkArgumentCount(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			if (args.size() != 2)
+				throw new IndeterminateEvaluationException("Funtcion " + functionId + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
 		}
 
 		@Override
 		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
 		{
-
+			/*
+			 * A geometry given as AttributeValue in the policy is a constant expression. It is known at policy load time 
+			 * (already parsed and normalized by the factory), so it gets prepared here once and the returned call 
+			 * refers to it directly. Only the other argument depends on the request.
+			 */
+			int constantIndex = -1;
+			GeometryValue constantValue = null;
+			for (int i = 0; i < argExpressions.size(); i++)
+			{
+				final Optional<?> argValue = argExpressions.get(i).getValue();
+				if (argValue.isPresent() && argValue.get() instanceof GeometryValue)
+				{
+					final GeometryValue gv = (GeometryValue) argValue.get();
+					gv.getPreparedGeometry();
+					if (gv.getUnderlyingValue() instanceof Polygonal)
+					{
+						gv.getPointLocator();
+						// large zones get a raster approximation for point tests
+						gv.getGridCovering();
+					}
+					if (constantIndex < 0)
+					{
+						constantIndex = i;
+						constantValue = gv;
+					}
+				}
+			}
+			
+			if (constantIndex < 0 || argExpressions.size() != 2)
+			{
+				return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
+				{
+	
+					@Override
+					protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
+					{
+						checkArgumentCount(args);
+						return TopologicalFunction.this.evaluateArguments(args.poll(), args.poll());
+					}
+	
+				};
+			}
+			
+			LOGGER.debug("Function {}: argument #{} is a constant geometry of type {}", functionId, constantIndex, constantValue.getUnderlyingValue().getGeometryType());
+			
+			final boolean isFirstConstant = constantIndex == 0;
+			final GeometryValue constant = constantValue;
 			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
 			{
 
 				@Override
 				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
 				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
+					checkArgumentCount(args);
 					
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
+					final GeometryValue arg1 = args.poll();
+					final GeometryValue arg2 = args.poll();
 					
-					return new BooleanValue(g1.equals(g2));
+					// The constant expression still returns its value (the same instance), which costs no parsing. What is gained is 
+					// that its prepared geometry, point locator and grid covering were built at policy load time, and that it is 
+					// the argument transformed if the CRS differ, so the transformed variants are kept with the policy.
+					return isFirstConstant ? TopologicalFunction.this.evaluateArguments(constant, arg2, true) : TopologicalFunction.this.evaluateArguments(arg1, constant, false);
 				}
 
 			};
 		}
 	}
 
-	public final static class Disjoint extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	/**
+	 * Base class of the topological functions whose result for a Point and a polygonal geometry is determined 
+	 * by the location of the point (interior, boundary or exterior of the polygonal geometry).
+	 */
+	static abstract class PointInAreaFunction extends TopologicalFunction
+	{
+		PointInAreaFunction(final String functionId)
+		{
+			super(functionId);
+		}
+		
+		/**
+		 * Tells whether the location of the point determines the result for the given argument order
+		 * 
+		 * @param pointFirst true if the point is the first argument, false if it is the second
+		 * @return true if {@link #evalPointInArea(int)} can be used
+		 */
+		protected abstract boolean isPointInAreaTest(boolean pointFirst);
+		
+		/**
+		 * Executes the topological test for a Point and a polygonal geometry
+		 * 
+		 * @param location the {@link Location} of the point relative to the polygonal geometry
+		 * @return the result of the test
+		 */
+		protected abstract boolean evalPointInArea(int location);
+	}
+
+	/**
+	 * <p>
+	 * Used here as AuthzForce function extension mechanism as plugging a topological test functions into the PDP engine.
+	 */
+	
+	public final static class Equals extends TopologicalFunction
+	{
+		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-equals";
+
+		public Equals()
+		{
+			super(ID);
+		}
+
+		@Override
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
+		{
+			// topologically equal geometries have the same envelope
+			return e1.equals(e2);
+		}
+
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			return gv1.getUnderlyingValue().equals(gv2.getUnderlyingValue());
+		}
+	}
+
+	public final static class Disjoint extends PointInAreaFunction
 	{
 		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-disjoint";
 
 		public Disjoint()
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			super(ID);
 		}
 
 		@Override
-		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
 		{
+			return e1.intersects(e2);
+		}
 
-			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
-			{
+		@Override
+		protected boolean getEnvelopeShortCircuitResult()
+		{
+			return true;
+		}
 
-				@Override
-				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
-				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
-										
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
-					
-					return new BooleanValue(g1.disjoint(g2));
-				}
+		@Override
+		protected boolean isPointInAreaTest(final boolean pointFirst)
+		{
+			return true;
+		}
 
-			};
+		@Override
+		protected boolean evalPointInArea(final int location)
+		{
+			return location == Location.EXTERIOR;
+		}
+
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			// disjoint is symmetric, so either argument can be the prepared one
+			if (gv1.usePreparedGeometry())
+				return gv1.getPreparedGeometry().disjoint(gv2.getUnderlyingValue());
+			
+			if (gv2.usePreparedGeometry())
+				return gv2.getPreparedGeometry().disjoint(gv1.getUnderlyingValue());
+			
+			return gv1.getUnderlyingValue().disjoint(gv2.getUnderlyingValue());
 		}
 	}
 	
-	public final static class Touches extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	public final static class Touches extends PointInAreaFunction
 	{
 		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-touches";
 
 		public Touches()
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			super(ID);
 		}
 
 		@Override
-		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
 		{
+			return e1.intersects(e2);
+		}
 
-			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
-			{
+		@Override
+		protected boolean isPointInAreaTest(final boolean pointFirst)
+		{
+			return true;
+		}
 
-				@Override
-				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
-				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
-
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
-					
-					return new BooleanValue(g1.touches(g2));
-				}
+		@Override
+		protected boolean evalPointInArea(final int location)
+		{
+			// the interior of a point is the point itself, so it may only be on the boundary
+			return location == Location.BOUNDARY;
+		}
 
-			};
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			// JTS has no optimized prepared implementation for touches
+			return gv1.getUnderlyingValue().touches(gv2.getUnderlyingValue());
 		}
 	}
 	
-	public final static class Crosses extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	public final static class Crosses extends TopologicalFunction
 	{
 		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-crosses";
 
 		public Crosses()
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			super(ID);
 		}
 
 		@Override
-		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
 		{
+			return e1.intersects(e2);
+		}
 
-			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
-			{
-
-				@Override
-				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
-				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
-										
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
-					
-					return new BooleanValue(g1.crosses(g2));
-				}
-
-			};
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			// JTS has no optimized prepared implementation for crosses
+			return gv1.getUnderlyingValue().crosses(gv2.getUnderlyingValue());
 		}
 	}
 		
-	public final static class Within extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	public final static class Within extends PointInAreaFunction
 	{
 		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-within";
 
 		public Within()
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			super(ID);
 		}
 
 		@Override
-		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
 		{
+			return e2.covers(e1);
+		}
 
-			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
-			{
+		@Override
+		protected boolean isPointInAreaTest(final boolean pointFirst)
+		{
+			return pointFirst;
+		}
 
-				@Override
-				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
-				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
-										
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
-					
-					return new BooleanValue(g1.within(g2));
-				}
+		@Override
+		protected boolean evalPointInArea(final int location)
+		{
+			// a point on the boundary is not within
+			return location == Location.INTERIOR;
+		}
 
-			};
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			// g1 within g2 is equivalent to g2 contains g1, which is optimized for prepared geometries
+			if (gv2.usePreparedGeometry())
+				return gv2.getPreparedGeometry().contains(gv1.getUnderlyingValue());
+			
+			return gv1.getUnderlyingValue().within(gv2.getUnderlyingValue());
 		}
 	}
 
-	public final static class Contains extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	public final static class Contains extends PointInAreaFunction
 	{
 		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-contains";
 
 		public Contains()
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			super(ID);
 		}
 
 		@Override
-		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
 		{
+			return e1.covers(e2);
+		}
 
-			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
-			{
+		@Override
+		protected boolean isPointInAreaTest(final boolean pointFirst)
+		{
+			return !pointFirst;
+		}
 
-				@Override
-				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
-				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
-										
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
-					
-					return new BooleanValue(g1.contains(g2));
-				}
+		@Override
+		protected boolean evalPointInArea(final int location)
+		{
+			// a polygon does not contain a point on its boundary
+			return location == Location.INTERIOR;
+		}
 
-			};
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			if (gv1.usePreparedGeometry())
+				return gv1.getPreparedGeometry().contains(gv2.getUnderlyingValue());
+			
+			return gv1.getUnderlyingValue().contains(gv2.getUnderlyingValue());
 		}
 	}
 	
-	public final static class Overlaps extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	public final static class Overlaps extends TopologicalFunction
 	{
 		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-overlaps";
 
 		public Overlaps()
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			super(ID);
 		}
 
 		@Override
-		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
 		{
+			return e1.intersects(e2);
+		}
 
-			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
-			{
-
-				@Override
-				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
-				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
-										
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
-					
-					return new BooleanValue(g1.overlaps(g2));
-				}
-
-			};
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			// JTS has no optimized prepared implementation for overlaps
+			return gv1.getUnderlyingValue().overlaps(gv2.getUnderlyingValue());
 		}
 	}
 
-	public final static class Intersects extends SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue>
+	public final static class Intersects extends PointInAreaFunction
 	{
 		public static final String ID = "urn:ogc:def:function:geoxacml:1.0:geometry-intersects";
 
 		public Intersects()
 		{
-			super(ID, StandardDatatypes.BOOLEAN, true, Arrays.asList(GeometryValue.DATATYPE));
+			super(ID);
 		}
 
 		@Override
-		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes)
+		protected boolean isEnvelopeCompatible(final Envelope e1, final Envelope e2)
 		{
+			return e1.intersects(e2);
+		}
 
-			return new EagerSinglePrimitiveTypeEval<BooleanValue, GeometryValue>(functionSignature, argExpressions, remainingArgTypes)
-			{
+		@Override
+		protected boolean isPointInAreaTest(final boolean pointFirst)
+		{
+			return true;
+		}
 
-				@Override
-				protected BooleanValue evaluate(final Deque<GeometryValue> args) throws IndeterminateEvaluationException
-				{
-					if (args.size() != 2)
-						throw new IndeterminateEvaluationException("Funtcion " + ID + " requires exactly two arguments but given " + args.size(), XacmlStatusCode.PROCESSING_ERROR.name());
-										
-					final Geometry g1 = args.poll().getUnderlyingValue();
-					final Geometry g2 = args.poll().getUnderlyingValue();
-										
-					if (g1.getSRID() != g2.getSRID())
-						return BooleanValue.FALSE;
-					
-					return new BooleanValue(g1.intersects(g2));
-				}
+		@Override
+		protected boolean evalPointInArea(final int location)
+		{
+			return location != Location.EXTERIOR;
+		}
 
-			};
+		@Override
+		protected boolean eval(final GeometryValue gv1, final GeometryValue gv2)
+		{
+			// intersects is symmetric, so either argument can be the prepared one
+			if (gv1.usePreparedGeometry())
+				return gv1.getPreparedGeometry().intersects(gv2.getUnderlyingValue());
+			
+			if (gv2.usePreparedGeometry())
+				return gv2.getPreparedGeometry().intersects(gv1.getUnderlyingValue());
+			
+			return gv1.getUnderlyingValue().intersects(gv2.getUnderlyingValue());
 		}
 	}
 
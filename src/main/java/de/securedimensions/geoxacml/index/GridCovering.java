@@ -0,0 +1,294 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.index;
+
+import java.util.Arrays;
+
+import org.locationtech.jts.algorithm.RectangleLineIntersector;
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Polygonal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Raster approximation of a polygonal geometry on a regular grid over its envelope.
+ * <p>
+ * Each cell is classified as {@link #INSIDE} (all points of the closed cell are in the interior), 
+ * {@link #OUTSIDE} (all points are in the exterior) or {@link #BOUNDARY} (an edge of the geometry passes through the cell). 
+ * A point in an inside or outside cell is located with one array lookup; only points in boundary cells 
+ * require an exact test.
+ * <p>
+ * The covering is built by marking all cells crossed by an edge as boundary cells. The remaining cells are not 
+ * crossed by the boundary, so all their points have the location of the cell center, which is determined with 
+ * the given locator.
+ * <p>
+ * The cells are square. The number of cells along the longer side of the envelope is the resolution, 
+ * configured with the system property {@value #RESOLUTION_PROPERTY} (default {@value #DEFAULT_RESOLUTION}). 
+ * A covering is only built for geometries with at least {@value #MIN_VERTICES_PROPERTY} vertices 
+ * (default {@value #DEFAULT_MIN_VERTICES}). A resolution of 0 disables the covering.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH. 
+ *
+ */
+public final class GridCovering
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(GridCovering.class);
+	
+	/**
+	 * System property for the number of cells along the longer side of the envelope
+	 */
+	public static final String RESOLUTION_PROPERTY = "de.securedimensions.geoxacml.index.grid.resolution";
+	
+	/**
+	 * System property for the minimum number of vertices of a geometry to build a covering
+	 */
+	public static final String MIN_VERTICES_PROPERTY = "de.securedimensions.geoxacml.index.grid.minVertices";
+	
+	public static final int DEFAULT_RESOLUTION = 256;
+	
+	public static final int DEFAULT_MIN_VERTICES = 1000;
+	
+	private static final int RESOLUTION = Integer.getInteger(RESOLUTION_PROPERTY, DEFAULT_RESOLUTION);
+	
+	private static final int MIN_VERTICES = Integer.getInteger(MIN_VERTICES_PROPERTY, DEFAULT_MIN_VERTICES);
+	
+	/**
+	 * Cell classification: an edge passes through the cell
+	 */
+	public static final byte BOUNDARY = 0;
+	
+	/**
+	 * Cell classification: the cell is in the interior of the geometry
+	 */
+	public static final byte INSIDE = 1;
+	
+	/**
+	 * Cell classification: the cell is in the exterior of the geometry
+	 */
+	public static final byte OUTSIDE = 2;
+	
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+	
+	// row major classification of the cells
+	private final byte[] cells;
+	
+	private GridCovering(final Envelope envelope, final int resolution)
+	{
+		this.minX = envelope.getMinX();
+		this.minY = envelope.getMinY();
+		this.maxX = envelope.getMaxX();
+		this.maxY = envelope.getMaxY();
+		this.cellSize = Math.max(envelope.getWidth(), envelope.getHeight()) / resolution;
+		this.columns = Math.max(1, Math.min(resolution, (int) Math.ceil(envelope.getWidth() / cellSize)));
+		this.rows = Math.max(1, Math.min(resolution, (int) Math.ceil(envelope.getHeight() / cellSize)));
+		this.cells = new byte[columns * rows];
+	}
+	
+	/**
+	 * Tells whether a covering should be built for the geometry with the configured resolution and minimum number of vertices
+	 * 
+	 * @param g the geometry
+	 * @return true if the geometry is polygonal, has an area and is large enough
+	 */
+	public static boolean isApplicable(final Geometry g)
+	{
+		if (RESOLUTION <= 0 || !(g instanceof Polygonal) || g.isEmpty() || g.getNumPoints() < MIN_VERTICES)
+			return false;
+		
+		final Envelope e = g.getEnvelopeInternal();
+		return e.getWidth() > 0 && e.getHeight() > 0;
+	}
+	
+	/**
+	 * Builds the covering with the configured resolution
+	 * 
+	 * @param g a polygonal geometry with non-empty envelope
+	 * @param locator the locator used to classify the cells not crossed by an edge
+	 * @return the covering
+	 */
+	public static GridCovering build(final Geometry g, final PointOnGeometryLocator locator)
+	{
+		return build(g, locator, RESOLUTION);
+	}
+	
+	/**
+	 * Builds the covering
+	 * 
+	 * @param g a polygonal geometry with non-empty envelope
+	 * @param locator the locator used to classify the cells not crossed by an edge
+	 * @param resolution number of cells along the longer side of the envelope
+	 * @return the covering
+	 */
+	public static GridCovering build(final Geometry g, final PointOnGeometryLocator locator, final int resolution)
+	{
+		final long start = System.nanoTime();
+		final GridCovering covering = new GridCovering(g.getEnvelopeInternal(), resolution);
+		
+		final byte unknown = -1;
+		Arrays.fill(covering.cells, unknown);
+		
+		g.apply(covering.new EdgeMarker());
+		
+		final Coordinate center = new Coordinate();
+		int boundaryCells = 0;
+		for (int row = 0; row < covering.rows; row++)
+		{
+			for (int column = 0; column < covering.columns; column++)
+			{
+				final int i = row * covering.columns + column;
+				if (covering.cells[i] == BOUNDARY)
+				{
+					boundaryCells++;
+					continue;
+				}
+				
+				center.x = covering.minX + (column + 0.5) * covering.cellSize;
+				center.y = covering.minY + (row + 0.5) * covering.cellSize;
+				final int location = locator.locate(center);
+				covering.cells[i] = location == Location.INTERIOR ? INSIDE : location == Location.EXTERIOR ? OUTSIDE : BOUNDARY;
+			}
+		}
+		
+		LOGGER.info("Grid covering of {} vertices: {}x{} cells, {}% boundary cells, {} bytes, built in {} ms", g.getNumPoints(), 
+				covering.columns, covering.rows, 100 * boundaryCells / covering.cells.length, covering.getMemoryBytes(), (System.nanoTime() - start) / 1000000);
+		
+		return covering;
+	}
+	
+	/**
+	 * Marks the cells crossed by the edges of all rings
+	 */
+	private final class EdgeMarker implements CoordinateSequenceFilter
+	{
+		private final Coordinate previous = new Coordinate();
+		private final Coordinate current = new Coordinate();
+		
+		@Override
+		public void filter(final CoordinateSequence seq, final int i)
+		{
+			current.x = seq.getX(i);
+			current.y = seq.getY(i);
+			if (i > 0)
+				markEdge(previous, current);
+			
+			previous.x = current.x;
+			previous.y = current.y;
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean isGeometryChanged()
+		{
+			return false;
+		}
+	}
+	
+	private void markEdge(final Coordinate p0, final Coordinate p1)
+	{
+		final int column0 = column(Math.min(p0.x, p1.x)), column1 = column(Math.max(p0.x, p1.x));
+		final int row0 = row(Math.min(p0.y, p1.y)), row1 = row(Math.max(p0.y, p1.y));
+		
+		// cells are tested slightly enlarged, so that rounding never leaves an edge undetected
+		final double margin = cellSize * 1e-6;
+		for (int row = Math.max(0, row0 - 1); row <= Math.min(rows - 1, row1 + 1); row++)
+		{
+			for (int column = Math.max(0, column0 - 1); column <= Math.min(columns - 1, column1 + 1); column++)
+			{
+				final int i = row * columns + column;
+				if (cells[i] == BOUNDARY)
+					continue;
+				
+				final Envelope cell = new Envelope(
+						minX + column * cellSize - margin, minX + (column + 1) * cellSize + margin, 
+						minY + row * cellSize - margin, minY + (row + 1) * cellSize + margin);
+				if (new RectangleLineIntersector(cell).intersects(p0, p1))
+					cells[i] = BOUNDARY;
+			}
+		}
+	}
+	
+	private int column(final double x)
+	{
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+	}
+	
+	private int row(final double y)
+	{
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+	}
+	
+	/**
+	 * Classifies a point
+	 * 
+	 * @param p the point
+	 * @return {@link #INSIDE} or {@link #OUTSIDE} if the location of the point is known from its cell, 
+	 * {@link #BOUNDARY} if it requires an exact test
+	 */
+	public byte classify(final Coordinate p)
+	{
+		// outside of the envelope, which is closed; NaN ordinates fail all comparisons
+		if (!(p.x >= minX && p.y >= minY && p.x <= maxX && p.y <= maxY))
+			return p.x < minX || p.y < minY || p.x > maxX || p.y > maxY ? OUTSIDE : BOUNDARY;
+		
+		// rounding can put a point on the max edge of the envelope one cell past the grid
+		final int column = column(p.x);
+		final int row = row(p.y);
+		return cells[row * columns + column];
+	}
+	
+	/**
+	 * @return number of cells
+	 */
+	public int getCellCount()
+	{
+		return cells.length;
+	}
+	
+	/**
+	 * @return approximate heap memory used by the covering in bytes
+	 */
+	public long getMemoryBytes()
+	{
+		// object header and fields plus the cell array with its header
+		return 48 + 16 + cells.length;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "GridCovering [" + columns + "x" + rows + " cells, " + getMemoryBytes() + " bytes]";
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.io;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reports a DOM subtree as SAX events to a {@link ContentHandler}. 
+ * <p>
+ * This allows to feed a GML element from a structured AttributeValue directly into the 
+ * GML2 or GML3 <code>GMLHandler</code> without serializing the DOM into bytes and parsing them again.
+ * <p>
+ * Only elements, attributes and text (including CDATA) are reported. Namespace declarations, 
+ * comments and processing instructions are ignored as they are not relevant to the geometry. 
+ * An instance is not thread-safe, as it re-uses its buffers.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH
+ */
+public final class DOMSAXWalker
+{
+	private static final String XMLNS_NAMESPACE = "http://www.w3.org/2000/xmlns/";
+	
+	private final AttributesImpl attributes = new AttributesImpl();
+	
+	private char[] text = new char[256];
+
+	/**
+	 * Walks the DOM subtree starting with the given node
+	 * 
+	 * @param node the root of the subtree, usually an Element
+	 * @param handler the handler receiving the SAX events
+	 * @throws SAXException if the handler throws a SAXException
+	 */
+	public void walk(final Node node, final ContentHandler handler) throws SAXException
+	{
+		handler.startDocument();
+		walkNode(node, handler);
+		handler.endDocument();
+	}
+
+	private void walkNode(final Node node, final ContentHandler handler) throws SAXException
+	{
+		switch (node.getNodeType())
+		{
+		case Node.ELEMENT_NODE:
+			final String qName = node.getNodeName();
+			String localName = node.getLocalName();
+			if (localName == null)
+				localName = qName.substring(qName.indexOf(':') + 1);
+			final String uri = node.getNamespaceURI() == null ? "" : node.getNamespaceURI();
+			
+			// The handlers copy the attributes, so the instance can be re-used for every element
+			setAttributes(node.getAttributes());
+			handler.startElement(uri, localName, qName, attributes);
+			
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+				walkNode(child, handler);
+			
+			handler.endElement(uri, localName, qName);
+			break;
+			
+		case Node.TEXT_NODE:
+		case Node.CDATA_SECTION_NODE:
+			final String value = node.getNodeValue();
+			final int length = value.length();
+			if (length > text.length)
+				text = new char[Math.max(length, text.length * 2)];
+			value.getChars(0, length, text, 0);
+			handler.characters(text, 0, length);
+			break;
+			
+		default:
+			// comments, processing instructions: nothing to report
+		}
+	}
+	
+	private void setAttributes(final NamedNodeMap attrs)
+	{
+		attributes.clear();
+		if (attrs == null)
+			return;
+		
+		for (int i = 0; i < attrs.getLength(); i++)
+		{
+			final Attr attr = (Attr) attrs.item(i);
+			final String qName = attr.getName();
+			if (XMLNS_NAMESPACE.equals(attr.getNamespaceURI()) || qName.equals("xmlns") || qName.startsWith("xmlns:"))
+				continue;
+			
+			String localName = attr.getLocalName();
+			if (localName == null)
+				localName = qName.substring(qName.indexOf(':') + 1);
+			final String uri = attr.getNamespaceURI() == null ? "" : attr.getNamespaceURI();
+			attributes.addAttribute(uri, localName, qName, "CDATA", attr.getValue());
+		}
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.io;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+
+import de.securedimensions.geoxacml.datatype.CompactCoordinateSequenceFactory;
+
+/**
+ * Reads geometries in the Tiny Well-known Binary format (TWKB).
+ * <p>
+ * TWKB stores the coordinates as zigzag encoded variable length integers: the difference to the previous 
+ * coordinate, scaled by the precision given in the header. The values are decoded into one <tt>double</tt> array 
+ * per sequence, which is stored with the coordinate sequence factory of the {@link GeometryFactory} 
+ * (see {@link CompactCoordinateSequenceFactory#fromOrdinates}). Bounding box, size and id list are skipped; 
+ * M values are dropped. TWKB does not define a SRID, the geometries have the SRID of the factory.
+ * <p>
+ * An instance is not thread-safe.
+ * 
+ * @see <a href="https://github.com/TWKB/Specification/blob/master/twkb.md">TWKB specification</a>
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH
+ */
+public final class TWKBReader
+{
+	private static final int POINT = 1;
+	private static final int LINESTRING = 2;
+	private static final int POLYGON = 3;
+	private static final int MULTIPOINT = 4;
+	private static final int MULTILINESTRING = 5;
+	private static final int MULTIPOLYGON = 6;
+	private static final int GEOMETRYCOLLECTION = 7;
+	
+	private static final int FLAG_BBOX = 0x01;
+	private static final int FLAG_SIZE = 0x02;
+	private static final int FLAG_IDLIST = 0x04;
+	private static final int FLAG_EXTENDED = 0x08;
+	private static final int FLAG_EMPTY = 0x10;
+	
+	/**
+	 * Maximum nesting of geometry collections, deeper nesting is rejected before it can overflow the stack
+	 */
+	private static final int MAX_DEPTH = 32;
+	
+	private final GeometryFactory gf;
+	
+	private byte[] bytes;
+	private int position;
+	
+	// the header of the geometry being read
+	private int dimensions;
+	private boolean hasZ;
+	private boolean hasM;
+	private int xyPrecision;
+	private double xyScale;
+	private double zScale;
+	
+	// the previous coordinate as integers, the deltas refer to it
+	private final long[] previous = new long[4];
+	
+	/**
+	 * @param gf the factory used to create the geometries
+	 */
+	public TWKBReader(final GeometryFactory gf)
+	{
+		this.gf = gf;
+	}
+	
+	/**
+	 * @param twkb the TWKB bytes
+	 * @return the geometry
+	 * @throws ParseException if the bytes are not a valid TWKB geometry
+	 */
+	public Geometry read(final byte[] twkb) throws ParseException
+	{
+		this.bytes = twkb;
+		this.position = 0;
+		try
+		{
+			final Geometry g = readGeometry(0);
+			if (position != bytes.length)
+				throw new ParseException("TWKB: " + (bytes.length - position) + " bytes after the geometry");
+			
+			return g;
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new ParseException("TWKB: unexpected end of data");
+		}
+		finally
+		{
+			this.bytes = null;
+		}
+	}
+	
+	private Geometry readGeometry(final int depth) throws ParseException
+	{
+		if (depth > MAX_DEPTH)
+			throw new ParseException("TWKB: geometry collections nested deeper than " + MAX_DEPTH + " levels");
+		
+		final int typeAndPrecision = bytes[position++] & 0xff;
+		final int type = typeAndPrecision & 0x0f;
+		final int precision = zigzag(typeAndPrecision >> 4);
+		final int flags = bytes[position++] & 0xff;
+		
+		hasZ = false;
+		hasM = false;
+		zScale = 1;
+		if ((flags & FLAG_EXTENDED) != 0)
+		{
+			final int extended = bytes[position++] & 0xff;
+			hasZ = (extended & 0x01) != 0;
+			hasM = (extended & 0x02) != 0;
+			zScale = Math.pow(10, (extended >> 2) & 0x07);
+		}
+		dimensions = 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+		xyPrecision = precision;
+		xyScale = Math.pow(10, Math.abs(precision));
+		
+		if ((flags & FLAG_SIZE) != 0)
+			readUnsignedVarLong();
+		
+		if ((flags & FLAG_BBOX) != 0)
+		{
+			for (int i = 0; i < 2 * dimensions; i++)
+				readSignedVarLong();
+		}
+		
+		if ((flags & FLAG_EMPTY) != 0)
+			return createEmpty(type);
+		
+		for (int i = 0; i < previous.length; i++)
+			previous[i] = 0;
+		
+		switch (type)
+		{
+			case POINT:
+				return gf.createPoint(readCoordinates(1));
+			case LINESTRING:
+				return gf.createLineString(readCoordinates(readCount("point", dimensions)));
+			case POLYGON:
+				return readPolygon();
+			case MULTIPOINT:
+			{
+				final Point[] points = new Point[readPartCount(flags, dimensions)];
+				for (int i = 0; i < points.length; i++)
+					points[i] = gf.createPoint(readCoordinates(1));
+				return gf.createMultiPoint(points);
+			}
+			case MULTILINESTRING:
+			{
+				final LineString[] lines = new LineString[readPartCount(flags, 1)];
+				for (int i = 0; i < lines.length; i++)
+					lines[i] = gf.createLineString(readCoordinates(readCount("point", dimensions)));
+				return gf.createMultiLineString(lines);
+			}
+			case MULTIPOLYGON:
+			{
+				final Polygon[] polygons = new Polygon[readPartCount(flags, 1)];
+				for (int i = 0; i < polygons.length; i++)
+					polygons[i] = readPolygon();
+				return gf.createMultiPolygon(polygons);
+			}
+			case GEOMETRYCOLLECTION:
+			{
+				// the members are complete TWKB geometries with their own header of at least two bytes
+				final Geometry[] geometries = new Geometry[readPartCount(flags, 2)];
+				for (int i = 0; i < geometries.length; i++)
+					geometries[i] = readGeometry(depth + 1);
+				return gf.createGeometryCollection(geometries);
+			}
+			default:
+				throw new ParseException("TWKB: unknown geometry type " + type);
+		}
+	}
+	
+	private Geometry createEmpty(final int type) throws ParseException
+	{
+		switch (type)
+		{
+			case POINT:
+				return gf.createPoint();
+			case LINESTRING:
+				return gf.createLineString();
+			case POLYGON:
+				return gf.createPolygon();
+			case MULTIPOINT:
+				return gf.createMultiPoint();
+			case MULTILINESTRING:
+				return gf.createMultiLineString();
+			case MULTIPOLYGON:
+				return gf.createMultiPolygon();
+			case GEOMETRYCOLLECTION:
+				return gf.createGeometryCollection();
+			default:
+				throw new ParseException("TWKB: unknown geometry type " + type);
+		}
+	}
+	
+	private int readPartCount(final int flags, final int bytesPerPart) throws ParseException
+	{
+		// each id takes at least one byte
+		final int count = readCount("part", (flags & FLAG_IDLIST) != 0 ? bytesPerPart + 1 : bytesPerPart);
+		if ((flags & FLAG_IDLIST) != 0)
+		{
+			for (int i = 0; i < count; i++)
+				readSignedVarLong();
+		}
+		return count;
+	}
+	
+	private Polygon readPolygon() throws ParseException
+	{
+		final int ringCount = readCount("ring", 1);
+		if (ringCount == 0)
+			return gf.createPolygon();
+		
+		final LinearRing shell = gf.createLinearRing(readCoordinates(readCount("point", dimensions)));
+		final LinearRing[] holes = new LinearRing[ringCount - 1];
+		for (int i = 0; i < holes.length; i++)
+			holes[i] = gf.createLinearRing(readCoordinates(readCount("point", dimensions)));
+		
+		return gf.createPolygon(shell, holes);
+	}
+	
+	private CoordinateSequence readCoordinates(final int count) throws ParseException
+	{
+		final int outputDimension = hasZ ? 3 : 2;
+		final double[] ordinates = new double[count * outputDimension];
+		int o = 0;
+		for (int i = 0; i < count; i++)
+		{
+			previous[0] += readSignedVarLong();
+			previous[1] += readSignedVarLong();
+			// division by the exact power of ten, 10^-precision is not exact for positive precision
+			ordinates[o++] = xyPrecision >= 0 ? previous[0] / xyScale : previous[0] * xyScale;
+			ordinates[o++] = xyPrecision >= 0 ? previous[1] / xyScale : previous[1] * xyScale;
+			if (hasZ)
+			{
+				previous[2] += readSignedVarLong();
+				ordinates[o++] = previous[2] / zScale;
+			}
+			if (hasM)
+				previous[3] += readSignedVarLong();
+		}
+		return CompactCoordinateSequenceFactory.fromOrdinates(gf.getCoordinateSequenceFactory(), ordinates, outputDimension);
+	}
+	
+	/**
+	 * Reads a count and checks it against the remaining bytes, so that a corrupt count does not allocate huge arrays
+	 * 
+	 * @param what the counted items, for the error message
+	 * @param bytesPerItem the minimum number of bytes of each item
+	 * @return the count
+	 * @throws ParseException if the remaining bytes cannot hold the items
+	 */
+	private int readCount(final String what, final int bytesPerItem) throws ParseException
+	{
+		final long count = readUnsignedVarLong();
+		final int remaining = bytes.length - position;
+		if (count > remaining / bytesPerItem)
+			throw new ParseException("TWKB: " + what + " count " + count + " exceeds the " + remaining + " remaining bytes");
+		
+		return (int) count;
+	}
+	
+	private long readUnsignedVarLong() throws ParseException
+	{
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			if (shift >= 64)
+				throw new ParseException("TWKB: variable length integer longer than 10 bytes at offset " + position);
+			
+			b = bytes[position++];
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		
+		return value;
+	}
+	
+	private long readSignedVarLong() throws ParseException
+	{
+		final long value = readUnsignedVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	private static int zigzag(final int value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
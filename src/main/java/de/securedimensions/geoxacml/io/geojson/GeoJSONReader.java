@@ -0,0 +1,600 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.io.geojson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import de.securedimensions.geoxacml.datatype.CompactCoordinateSequenceFactory;
+
+/**
+ * Reads GeoJSON geometry objects (RFC 7946) with the Jackson streaming parser.
+ * <p>
+ * The positions are decoded from the token stream into one <tt>double</tt> buffer and copied once into the 
+ * coordinate sequences of the geometry; no object model of the document is created. 
+ * The axes can be swapped while decoding (see {@link #GeoJSONReader(GeometryFactory, boolean)}), 
+ * so that the LON/LAT positions are stored as LAT/LON without a second pass.
+ * <p>
+ * Supported are the geometry types <tt>Point</tt>, <tt>MultiPoint</tt>, <tt>LineString</tt>, <tt>MultiLineString</tt>, 
+ * <tt>Polygon</tt>, <tt>MultiPolygon</tt> and <tt>GeometryCollection</tt>. Other types (e.g. <tt>Feature</tt>) and the 
+ * <tt>crs</tt> member are rejected as soon as they are read; <tt>bbox</tt> and foreign members are skipped. 
+ * Positions with more than three elements are truncated to X, Y and Z.
+ * <p>
+ * An object that was already parsed by a JSON parser, e.g. a GeoJSON object inside a XACML JSON request, is read from 
+ * its tree without printing and re-parsing it: {@link #read(JSONObject)} reads the org.json objects of the AuthzForce 
+ * JSON request parser, {@link #read(Map)} reads a tree of {@link Map}s and {@link List}s.
+ * <p>
+ * The sequences are created with the coordinate sequence factory of the {@link GeometryFactory}, 
+ * see {@link CompactCoordinateSequenceFactory#fromOrdinates}.
+ * <p>
+ * An instance is not thread-safe as it re-uses its buffer.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH
+ */
+public final class GeoJSONReader
+{
+	// the factory is thread-safe once configured
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	
+	private static final int STRIDE = 3;
+	
+	private final GeometryFactory gf;
+	
+	private final boolean swapXY;
+	
+	// X, Y and Z (NaN if absent) of the positions of the current coordinates member
+	private double[] ordinates = new double[3 * 256];
+	
+	private int positions;
+	
+	private boolean hasZ;
+	
+	/**
+	 * Number of arrays of each nesting level (1: positions, 2: lists of positions, 3: lists of lists) in the current 
+	 * coordinates member and the index of the last child of each array
+	 */
+	private final int[][] ends = new int[4][];
+	
+	private final int[] counts = new int[4];
+	
+	/**
+	 * @param gf the factory used to create the geometries
+	 * @param swapXY true to store the positions as LAT/LON (Y/X)
+	 */
+	public GeoJSONReader(final GeometryFactory gf, final boolean swapXY)
+	{
+		this.gf = gf;
+		this.swapXY = swapXY;
+		for (int i = 0; i < ends.length; i++)
+			ends[i] = new int[16];
+	}
+	
+	/**
+	 * @param json the GeoJSON geometry object
+	 * @return the geometry
+	 * @throws ParseException if the text is not a supported GeoJSON geometry object
+	 */
+	public Geometry read(final String json) throws ParseException
+	{
+		try (JsonParser p = JSON_FACTORY.createParser(json))
+		{
+			if (p.nextToken() != JsonToken.START_OBJECT)
+				throw new ParseException("GeoJSON: geometry object expected");
+			
+			final Geometry g = readGeometry(p);
+			if (p.nextToken() != null)
+				throw new ParseException("GeoJSON: unexpected content after the geometry object");
+			
+			return g;
+		}
+		catch (IOException e)
+		{
+			throw new ParseException("GeoJSON: " + e.getMessage());
+		}
+	}
+	
+	/*
+	 * The parser is positioned at the START_OBJECT of the geometry and will be positioned at its END_OBJECT
+	 */
+	private Geometry readGeometry(final JsonParser p) throws IOException, ParseException
+	{
+		String type = null;
+		int height = -2;
+		List<Geometry> geometries = null;
+		
+		JsonToken t;
+		while ((t = p.nextToken()) == JsonToken.FIELD_NAME)
+		{
+			final String name = p.getCurrentName();
+			t = p.nextToken();
+			if ("type".equals(name))
+			{
+				if (t != JsonToken.VALUE_STRING)
+					throw new ParseException("GeoJSON: type must be a string");
+				
+				type = p.getText();
+				getHeight(type);
+			}
+			else if ("coordinates".equals(name))
+			{
+				if (t != JsonToken.START_ARRAY || "GeometryCollection".equals(type))
+					throw new ParseException("GeoJSON: unexpected coordinates member");
+				
+				reset();
+				height = readArray(p, 0);
+			}
+			else if ("geometries".equals(name))
+			{
+				if (t != JsonToken.START_ARRAY || (type != null && !"GeometryCollection".equals(type)))
+					throw new ParseException("GeoJSON: unexpected geometries member");
+				
+				geometries = new ArrayList<Geometry>();
+				while ((t = p.nextToken()) == JsonToken.START_OBJECT)
+					geometries.add(readGeometry(p));
+				if (t != JsonToken.END_ARRAY)
+					throw new ParseException("GeoJSON: geometries must contain geometry objects");
+			}
+			else if ("crs".equals(name))
+			{
+				throw new ParseException("GeoJSON: the crs member is not supported, coordinates must be CRS84");
+			}
+			else
+			{
+				// bbox and foreign members
+				p.skipChildren();
+			}
+		}
+		
+		if (t != JsonToken.END_OBJECT)
+			throw new ParseException("GeoJSON: invalid geometry object");
+		
+		return toGeometry(type, height, geometries);
+	}
+	
+	/**
+	 * @param object the GeoJSON geometry object as tree of {@link Map}s (objects), {@link List}s (arrays), 
+	 * {@link Number}s and {@link String}s, e.g. from <tt>JSONObject.toMap()</tt>
+	 * @return the geometry
+	 * @throws ParseException if the object is not a supported GeoJSON geometry object
+	 */
+	public Geometry read(final Map<?, ?> object) throws ParseException
+	{
+		return readObject(object);
+	}
+	
+	/**
+	 * @param object the GeoJSON geometry object as parsed by org.json
+	 * @return the geometry
+	 * @throws ParseException if the object is not a supported GeoJSON geometry object
+	 */
+	public Geometry read(final JSONObject object) throws ParseException
+	{
+		return readObject(object);
+	}
+	
+	/*
+	 * Reads a parsed object, either a Map or a JSONObject; the arrays are Lists or JSONArrays
+	 */
+	private Geometry readObject(final Object object) throws ParseException
+	{
+		String type = null;
+		int height = -2;
+		List<Geometry> geometries = null;
+		
+		final Object typeMember = member(object, "type");
+		if (typeMember != null)
+		{
+			if (!(typeMember instanceof String))
+				throw new ParseException("GeoJSON: type must be a string");
+			
+			type = (String) typeMember;
+			getHeight(type);
+		}
+		
+		if (hasMember(object, "crs"))
+			throw new ParseException("GeoJSON: the crs member is not supported, coordinates must be CRS84");
+		
+		final Object coordinates = member(object, "coordinates");
+		if (coordinates != null)
+		{
+			if (!isArray(coordinates) || "GeometryCollection".equals(type))
+				throw new ParseException("GeoJSON: unexpected coordinates member");
+			
+			reset();
+			height = readArray(coordinates, 0);
+		}
+		
+		final Object members = member(object, "geometries");
+		if (members != null)
+		{
+			if (!isArray(members) || (type != null && !"GeometryCollection".equals(type)))
+				throw new ParseException("GeoJSON: unexpected geometries member");
+			
+			final int length = length(members);
+			geometries = new ArrayList<Geometry>(length);
+			for (int i = 0; i < length; i++)
+			{
+				final Object member = element(members, i);
+				if (!(member instanceof Map || member instanceof JSONObject))
+					throw new ParseException("GeoJSON: geometries must contain geometry objects");
+				
+				geometries.add(readObject(member));
+			}
+		}
+		
+		return toGeometry(type, height, geometries);
+	}
+	
+	private Geometry toGeometry(final String type, final int height, final List<Geometry> geometries) throws ParseException
+	{
+		if (type == null)
+			throw new ParseException("GeoJSON: type member missing");
+		
+		if ("GeometryCollection".equals(type))
+		{
+			if (geometries == null)
+				throw new ParseException("GeoJSON: geometries member missing");
+			
+			return gf.createGeometryCollection(geometries.toArray(new Geometry[geometries.size()]));
+		}
+		
+		if (height == -2)
+			throw new ParseException("GeoJSON: coordinates member missing");
+		
+		try
+		{
+			return build(type, height);
+		}
+		catch (IllegalArgumentException e)
+		{
+			// e.g. a ring that is not closed
+			throw new ParseException("GeoJSON: " + e.getMessage());
+		}
+	}
+	
+	/*
+	 * The nesting level of the positions in the coordinates member
+	 */
+	private static int getHeight(final String type) throws ParseException
+	{
+		switch (type)
+		{
+		case "Point":
+			return 0;
+		case "MultiPoint":
+		case "LineString":
+			return 1;
+		case "MultiLineString":
+		case "Polygon":
+			return 2;
+		case "MultiPolygon":
+			return 3;
+		case "GeometryCollection":
+			return -1;
+		default:
+			throw new ParseException("GeoJSON: unsupported type " + type);
+		}
+	}
+	
+	/*
+	 * Reads an array of the coordinates member. The parser is positioned at the START_ARRAY and will be positioned at the END_ARRAY.
+	 * Returns 0 for a position, the nesting level for an array of arrays and -1 for an empty array.
+	 */
+	private int readArray(final JsonParser p, final int depth) throws IOException, ParseException
+	{
+		if (depth > 3)
+			throw new ParseException("GeoJSON: coordinates nested too deep");
+		
+		JsonToken t = p.nextToken();
+		if (t == JsonToken.VALUE_NUMBER_INT || t == JsonToken.VALUE_NUMBER_FLOAT)
+		{
+			readPosition(p);
+			return 0;
+		}
+		
+		if (t == JsonToken.END_ARRAY)
+			return -1;
+		
+		int height = -1;
+		while (t != JsonToken.END_ARRAY)
+		{
+			if (t != JsonToken.START_ARRAY)
+				throw new ParseException("GeoJSON: invalid coordinates");
+			
+			final int h = readArray(p, depth + 1);
+			if (h < 0)
+				throw new ParseException("GeoJSON: empty coordinate array");
+			if (height >= 0 && h + 1 != height)
+				throw new ParseException("GeoJSON: inconsistent nesting of coordinates");
+			height = h + 1;
+			
+			t = p.nextToken();
+		}
+		
+		endArray(height);
+		return height;
+	}
+	
+	/*
+	 * Reads an array (List or JSONArray) of the coordinates member of a parsed object, returns like readArray(JsonParser, int)
+	 */
+	private int readArray(final Object array, final int depth) throws ParseException
+	{
+		if (depth > 3)
+			throw new ParseException("GeoJSON: coordinates nested too deep");
+		
+		final int length = length(array);
+		if (length == 0)
+			return -1;
+		
+		if (element(array, 0) instanceof Number)
+		{
+			if (length < 2)
+				throw new ParseException("GeoJSON: a position requires at least two numbers");
+			
+			// further elements are not supported by RFC 7946 and ignored
+			for (int i = 0; i < length; i++)
+				if (!(element(array, i) instanceof Number))
+					throw new ParseException("GeoJSON: a position must only contain numbers");
+			
+			addPosition(((Number) element(array, 0)).doubleValue(), ((Number) element(array, 1)).doubleValue(), 
+					length > 2 ? ((Number) element(array, 2)).doubleValue() : Double.NaN);
+			return 0;
+		}
+		
+		int height = -1;
+		for (int i = 0; i < length; i++)
+		{
+			final Object element = element(array, i);
+			if (!isArray(element))
+				throw new ParseException("GeoJSON: invalid coordinates");
+			
+			final int h = readArray(element, depth + 1);
+			if (h < 0)
+				throw new ParseException("GeoJSON: empty coordinate array");
+			if (height >= 0 && h + 1 != height)
+				throw new ParseException("GeoJSON: inconsistent nesting of coordinates");
+			height = h + 1;
+		}
+		
+		endArray(height);
+		return height;
+	}
+	
+	/*
+	 * Accessors of the parsed trees: org.json represents null as JSONObject.NULL
+	 */
+	private static Object member(final Object object, final String name)
+	{
+		if (object instanceof JSONObject)
+		{
+			final Object value = ((JSONObject) object).opt(name);
+			return value == JSONObject.NULL ? null : value;
+		}
+		
+		return ((Map<?, ?>) object).get(name);
+	}
+	
+	private static boolean hasMember(final Object object, final String name)
+	{
+		return object instanceof JSONObject ? ((JSONObject) object).has(name) : ((Map<?, ?>) object).containsKey(name);
+	}
+	
+	private static boolean isArray(final Object value)
+	{
+		return value instanceof List || value instanceof JSONArray;
+	}
+	
+	private static int length(final Object array)
+	{
+		return array instanceof JSONArray ? ((JSONArray) array).length() : ((List<?>) array).size();
+	}
+	
+	private static Object element(final Object array, final int i)
+	{
+		return array instanceof JSONArray ? ((JSONArray) array).opt(i) : ((List<?>) array).get(i);
+	}
+	
+	/*
+	 * Clears the positions and arrays of the previous coordinates member
+	 */
+	private void reset()
+	{
+		positions = 0;
+		hasZ = false;
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = 0;
+	}
+	
+	/*
+	 * Records the end of an array of the given nesting level as number of children of the level below
+	 */
+	private void endArray(final int height)
+	{
+		final int end = height == 1 ? positions : counts[height - 1];
+		if (counts[height] == ends[height].length)
+		{
+			final int[] tmp = new int[2 * ends[height].length];
+			System.arraycopy(ends[height], 0, tmp, 0, counts[height]);
+			ends[height] = tmp;
+		}
+		ends[height][counts[height]++] = end;
+	}
+	
+	/*
+	 * Appends a position (z is NaN if absent) to the buffer, with the axes swapped if configured
+	 */
+	private void addPosition(final double x, final double y, final double z)
+	{
+		if (ordinates.length < STRIDE * (positions + 1))
+		{
+			final double[] tmp = new double[2 * ordinates.length];
+			System.arraycopy(ordinates, 0, tmp, 0, STRIDE * positions);
+			ordinates = tmp;
+		}
+		
+		final int offset = STRIDE * positions;
+		ordinates[offset] = swapXY ? y : x;
+		ordinates[offset + 1] = swapXY ? x : y;
+		ordinates[offset + 2] = z;
+		if (!Double.isNaN(z))
+			hasZ = true;
+		
+		positions++;
+	}
+	
+	/*
+	 * The parser is positioned at the first number of the position and will be positioned at the END_ARRAY
+	 */
+	private void readPosition(final JsonParser p) throws IOException, ParseException
+	{
+		final double x = p.getDoubleValue();
+		if (!isNumber(p.nextToken()))
+			throw new ParseException("GeoJSON: a position requires at least two numbers");
+		final double y = p.getDoubleValue();
+		
+		double z = Double.NaN;
+		JsonToken t = p.nextToken();
+		if (isNumber(t))
+		{
+			z = p.getDoubleValue();
+			// further elements are not supported by RFC 7946 and ignored
+			while (isNumber(t = p.nextToken()))
+				;
+		}
+		if (t != JsonToken.END_ARRAY)
+			throw new ParseException("GeoJSON: a position must only contain numbers");
+		
+		addPosition(x, y, z);
+	}
+	
+	private static boolean isNumber(final JsonToken t)
+	{
+		return t == JsonToken.VALUE_NUMBER_INT || t == JsonToken.VALUE_NUMBER_FLOAT;
+	}
+	
+	private Geometry build(final String type, final int height) throws ParseException
+	{
+		final int expected = getHeight(type);
+		
+		// an empty coordinates array is an empty geometry
+		if (height == -1)
+		{
+			switch (type)
+			{
+			case "Point":
+				return gf.createPoint();
+			case "MultiPoint":
+				return gf.createMultiPoint();
+			case "LineString":
+				return gf.createLineString();
+			case "MultiLineString":
+				return gf.createMultiLineString();
+			case "Polygon":
+				return gf.createPolygon();
+			default:
+				return gf.createMultiPolygon();
+			}
+		}
+		
+		if (height != expected)
+			throw new ParseException("GeoJSON: coordinates do not match the type " + type);
+		
+		switch (type)
+		{
+		case "Point":
+			return gf.createPoint(sequence(0, 1));
+		case "MultiPoint":
+		{
+			final Point[] points = new Point[positions];
+			for (int i = 0; i < positions; i++)
+				points[i] = gf.createPoint(sequence(i, i + 1));
+			return gf.createMultiPoint(points);
+		}
+		case "LineString":
+			return gf.createLineString(sequence(0, positions));
+		case "MultiLineString":
+		{
+			final LineString[] lines = new LineString[counts[1]];
+			for (int i = 0; i < lines.length; i++)
+				lines[i] = gf.createLineString(sequence(i == 0 ? 0 : ends[1][i - 1], ends[1][i]));
+			return gf.createMultiLineString(lines);
+		}
+		case "Polygon":
+			return polygon(0, counts[1]);
+		default:
+		{
+			final Polygon[] polygons = new Polygon[counts[2]];
+			for (int i = 0; i < polygons.length; i++)
+				polygons[i] = polygon(i == 0 ? 0 : ends[2][i - 1], ends[2][i]);
+			return gf.createMultiPolygon(polygons);
+		}
+		}
+	}
+	
+	/*
+	 * Creates the polygon from the rings with the given indexes, the first ring is the shell
+	 */
+	private Polygon polygon(final int firstRing, final int endRing)
+	{
+		final LinearRing[] rings = new LinearRing[endRing - firstRing];
+		for (int r = firstRing; r < endRing; r++)
+			rings[r - firstRing] = gf.createLinearRing(sequence(r == 0 ? 0 : ends[1][r - 1], ends[1][r]));
+		
+		final LinearRing[] holes = new LinearRing[rings.length - 1];
+		System.arraycopy(rings, 1, holes, 0, holes.length);
+		return gf.createPolygon(rings[0], holes);
+	}
+	
+	/*
+	 * Copies the positions [start, end) into a sequence, with Z only if any position has one
+	 */
+	private CoordinateSequence sequence(final int start, final int end)
+	{
+		final int dimension = hasZ ? 3 : 2;
+		final double[] coords = new double[dimension * (end - start)];
+		int j = 0;
+		for (int i = STRIDE * start; i < STRIDE * end; i += STRIDE)
+		{
+			coords[j++] = ordinates[i];
+			coords[j++] = ordinates[i + 1];
+			if (hasZ)
+				coords[j++] = ordinates[i + 2];
+		}
+		return CompactCoordinateSequenceFactory.fromOrdinates(gf.getCoordinateSequenceFactory(), coords, dimension);
+	}
+}
@@ -73,6 +73,11 @@ public class GMLHandler extends DefaultHandler {
 
 		protected ParseStrategy strategy;
 
+		/**
+		 * Receives the text of coordinate elements, null for all other elements
+		 */
+		protected OrdinateDecoder ordinates = null;
+
 		/**
 		 * @param strategy 
 		 * @param attributes Nullable
@@ -125,6 +130,8 @@ public class GMLHandler extends DefaultHandler {
 
 	private GeometryFactory gf = null;
 
+	private final OrdinateDecoder ordinateDecoder = new OrdinateDecoder();
+
 	/**
 	 * Creates a new handler.
 	 * Allows the user to specify a delegate object for error / warning messages. 
@@ -145,6 +152,16 @@ public class GMLHandler extends DefaultHandler {
 		stack.push(new Handler(null, null));
 	}
 
+	/**
+	 * Tells the handler that the coordinates are given in LON/LAT order (e.g. CRS84) and must be stored as LAT/LON. 
+	 * The axes are swapped while the coordinates are decoded.
+	 * 
+	 * @param swapXY true to swap the first two ordinates of each coordinate
+	 */
+	public void setSwapXY(boolean swapXY) {
+		ordinateDecoder.setSwapXY(swapXY);
+	}
+
 	/**
 	 * Tests whether this handler has completed parsing 
 	 * a geometry.
@@ -193,8 +210,13 @@ public class GMLHandler extends DefaultHandler {
 	 */
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
-		if (!stack.isEmpty())
-			((Handler) stack.peek()).addText(new String(ch, start, length));
+		if (!stack.isEmpty()) {
+			Handler h = (Handler) stack.peek();
+			if (h.ordinates != null)
+				decode(h, ch, start, length);
+			else
+				h.addText(new String(ch, start, length));
+		}
 	}
 
 	/**
@@ -203,8 +225,21 @@ public class GMLHandler extends DefaultHandler {
 	@Override
 	public void ignorableWhitespace(char[] ch, int start, int length)
 			throws SAXException {
-		if (!stack.isEmpty())
-			((Handler) stack.peek()).addText(" ");
+		if (!stack.isEmpty()) {
+			Handler h = (Handler) stack.peek();
+			if (h.ordinates != null)
+				decode(h, ch, start, length);
+			else
+				h.addText(" ");
+		}
+	}
+
+	private void decode(Handler h, char[] ch, int start, int length) throws SAXException {
+		try {
+			h.ordinates.decode(ch, start, length);
+		} catch (NumberFormatException e) {
+			throw new SAXException("Invalid ordinate: " + e.getMessage(), e);
+		}
 	}
 
 	/**
@@ -214,6 +249,13 @@ public class GMLHandler extends DefaultHandler {
 	public void endElement(String uri, String localName, String qName)
 			throws SAXException {
 		Handler thisAction = (Handler) stack.pop();
+		if (thisAction.ordinates != null) {
+			try {
+				thisAction.ordinates.finish();
+			} catch (NumberFormatException e) {
+				throw new SAXException("Invalid ordinate: " + e.getMessage(), e);
+			}
+		}
 		((Handler) stack.peek()).keep(thisAction.create(gf));
 	}
 
@@ -224,12 +266,18 @@ public class GMLHandler extends DefaultHandler {
 	public void startElement(String uri, String localName, String qName,
 			Attributes attributes) throws SAXException {
 		// create a handler
-		ParseStrategy ps = GeometryStrategies.findStrategy(uri, localName);
+		String name = localName;
+		ParseStrategy ps = GeometryStrategies.findStrategy(uri, name);
 		if (ps == null) {
-			String qn = qName.substring(qName.indexOf(':') + 1, qName.length());
-			ps = GeometryStrategies.findStrategy(null, qn);
+			name = qName.substring(qName.indexOf(':') + 1, qName.length());
+			ps = GeometryStrategies.findStrategy(null, name);
 		}
 		Handler h = new Handler(ps, attributes);
+		// coordinates are decoded from the character buffers without intermediate Strings
+		if (ps != null && GeometryStrategies.isOrdinateElement(name)) {
+			ordinateDecoder.reset();
+			h.ordinates = ordinateDecoder;
+		}
 		// and add it to the stack
 		stack.push(h);
 	}
@@ -21,12 +21,13 @@ package de.securedimensions.geoxacml.io.gml3;
 import java.io.*; 
 
 import javax.xml.parsers.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
-import org.xml.sax.InputSource; 
 import org.xml.sax.SAXException; 
-import org.xml.sax.helpers.DefaultHandler; 
  
 /**
  * Adapted from org.locationtech.jts.io.gml2.GMLReader to support GML3 node names.
@@ -34,10 +35,10 @@ import org.xml.sax.helpers.DefaultHandler;
  * Reads a GML3 geometry from an XML fragment into a {@link Geometry}. 
  * <p> 
  * 
- * The reader ignores namespace prefixes,  
- * and disables both the validation and namespace options on the <tt>SAXParser</tt>. 
- * This class requires the presence of a SAX Parser available via the  
- * {@link javax.xml.parsers.SAXParserFactory#newInstance()} 
+ * The reader ignores namespace prefixes and uses the pull based {@link GMLStreamReader} 
+ * on a StAX <tt>XMLStreamReader</tt> with DTD support disabled. 
+ * This class requires the presence of a StAX implementation available via the  
+ * {@link javax.xml.stream.XMLInputFactory#newInstance()} 
  * method. 
  * <p> 
  * A specification of the GML XML format  
@@ -48,16 +49,21 @@ import org.xml.sax.helpers.DefaultHandler;
  * If a lower precision for the data is required, a subsequent 
  * process must be run on the data to reduce its precision. 
  * <p> 
+ * This reader is part of the library API for GML text; the PDP reads GML AttributeValues from the DOM with the {@link GMLHandler}. 
  * To parse and build geometry directly from a SAX stream, see {@link GMLHandler}. 
+ * To parse from an existing StAX stream, see {@link GMLStreamReader}. 
  * 
  * @author David Zwiers, Vivid Solutions. 
  * @author Andreas Matheus, Secure Dimensions GmbH
  *  
  * @see GMLHandler 
+ * @see GMLStreamReader 
  */ 
 public class GMLReader  
 { 
-	
+ 
+ private static final XMLInputFactory INPUT_FACTORY = newInputFactory(); 
+ 
  /**
   * Reads a GML3 Geometry from a <tt>String</tt> into a single {@link Geometry} 
   * 
@@ -89,20 +95,38 @@ public class GMLReader
   * @throws IOException 
   */ 
  public Geometry read(Reader reader, GeometryFactory geometryFactory) throws SAXException, IOException, ParserConfigurationException{ 
-  SAXParserFactory fact = SAXParserFactory.newInstance(); 
- 
-  fact.setNamespaceAware(false); 
-  fact.setValidating(false); 
- 
-  SAXParser parser = fact.newSAXParser(); 
- 
   if(geometryFactory == null) 
    geometryFactory = new GeometryFactory(); 
  
-  GMLHandler gh = new GMLHandler(geometryFactory,null); 
-  parser.parse(new InputSource(reader), gh); 
+  XMLStreamReader xsr = null; 
+  try{ 
+   // The StAX specification does not guarantee a thread-safe factory 
+   synchronized(INPUT_FACTORY){ 
+    xsr = INPUT_FACTORY.createXMLStreamReader(reader); 
+   } 
+   return new GMLStreamReader(geometryFactory).read(xsr); 
+  }catch(XMLStreamException e){ 
+   throw new SAXException(e.getMessage(), e); 
+  }finally{ 
+   if(xsr != null){ 
+    try{ 
+     xsr.close(); 
+    }catch(XMLStreamException e){ 
+     // ignore 
+    } 
+   } 
+  } 
+ } 
+ 
+ private static XMLInputFactory newInputFactory(){ 
+  XMLInputFactory fact = XMLInputFactory.newInstance(); 
  
-  return gh.getGeometry(); 
+  fact.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE); 
+  fact.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE); 
+  fact.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE); 
+  fact.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE); 
+  
+  return fact; 
  } 
  
 }
\ No newline at end of file
@@ -0,0 +1,322 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.io.gml3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Pull based reader for GML3 geometries using StAX.
+ * <p>
+ * Unlike the {@link GMLHandler}, this reader does not create an object per XML element. 
+ * The ordinates of <tt>posList</tt>, <tt>pos</tt>, <tt>lowerCorner</tt> and <tt>upperCorner</tt> are decoded 
+ * by an {@link OrdinateDecoder} and copied once into the {@link CoordinateSequence} of the geometry.
+ * <p>
+ * The same geometries as with the {@link GeometryStrategies} are supported. 
+ * The dimension of the coordinates is taken from the <tt>srsDimension</tt> (or <tt>dimension</tt>) attribute 
+ * of the coordinate element or the closest geometry element, 2 otherwise.
+ * <p>
+ * This reader is used by {@link GMLReader} for GML given as text. It is not used by the PDP: the GML of a structured 
+ * AttributeValue arrives as DOM and is reported by the <tt>DOMSAXWalker</tt> to the {@link GMLHandler}, 
+ * which decodes the ordinates with the same {@link OrdinateDecoder}. The JDK StAX implementation cannot read a DOM.
+ * <p>
+ * An instance is not thread-safe as it re-uses its buffers.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH
+ * 
+ * @see GMLReader
+ */
+public class GMLStreamReader
+{
+	private final GeometryFactory gf;
+	
+	private final OrdinateDecoder ordinates = new OrdinateDecoder();
+
+	/**
+	 * @param gf the factory used to create the geometries
+	 */
+	public GMLStreamReader(GeometryFactory gf)
+	{
+		this.gf = gf;
+	}
+	
+	/**
+	 * Tells the reader that the coordinates are given in LON/LAT order (e.g. CRS84) and must be stored as LAT/LON. 
+	 * The axes are swapped while the coordinates are decoded.
+	 * 
+	 * @param swapXY true to swap the first two ordinates of each coordinate
+	 */
+	public void setSwapXY(boolean swapXY)
+	{
+		ordinates.setSwapXY(swapXY);
+	}
+	
+	/**
+	 * Reads the first geometry element from the stream
+	 * 
+	 * @param reader the StAX reader, positioned before or at the geometry element
+	 * @return the geometry
+	 * @throws XMLStreamException if the XML is not a supported GML3 geometry
+	 */
+	public Geometry read(XMLStreamReader reader) throws XMLStreamException
+	{
+		int event = reader.getEventType();
+		while (event != XMLStreamConstants.START_ELEMENT)
+			event = reader.next();
+		
+		return readGeometry(reader, 2);
+	}
+
+	/*
+	 * The reader is positioned at the START_ELEMENT of the geometry and will be positioned at its END_ELEMENT
+	 */
+	private Geometry readGeometry(XMLStreamReader r, int dimension) throws XMLStreamException
+	{
+		final String name = r.getLocalName();
+		final int srid = GeometryStrategies.parseSrid(r.getAttributeValue(null, GMLConstants.GML_ATTR_SRSNAME), gf.getSRID());
+		dimension = getDimension(r, dimension);
+		
+		final Geometry g;
+		if (GMLConstants.GML_POINT.equals(name))
+		{
+			g = gf.createPoint(readCoordinates(r, dimension));
+		}
+		else if (GMLConstants.GML_LINESTRING.equals(name))
+		{
+			g = gf.createLineString(readCoordinates(r, dimension));
+		}
+		else if (GMLConstants.GML_LINEARRING.equals(name))
+		{
+			g = gf.createLinearRing(readCoordinates(r, dimension));
+		}
+		else if (GMLConstants.GML_POLYGON.equals(name))
+		{
+			g = readPolygon(r, dimension);
+		}
+		else if (GMLConstants.GML_ENVELOPE.equals(name))
+		{
+			final CoordinateSequence corners = readCoordinates(r, dimension);
+			if (corners.size() != 2)
+				throw new XMLStreamException("Cannot create a box without either two coords or one coordinate sequence", r.getLocation());
+			
+			final Coordinate[] p = new Coordinate[5];
+			p[0] = corners.getCoordinateCopy(0);
+			p[2] = corners.getCoordinateCopy(1);
+			p[4] = new Coordinate(p[0]);
+			p[1] = new Coordinate(p[2].x, p[0].y);
+			p[3] = new Coordinate(p[0].x, p[2].y);
+			g = gf.createPolygon(p);
+		}
+		else if (GMLConstants.GML_CIRCLE_BY_CENTER.equals(name))
+		{
+			g = readCircle(r, dimension);
+		}
+		else if (GMLConstants.GML_MULTI_POINT.equals(name))
+		{
+			final List<Geometry> members = readMembers(r, dimension);
+			g = gf.createMultiPoint(members.toArray(new Point[members.size()]));
+		}
+		else if (GMLConstants.GML_MULTI_LINESTRING.equals(name))
+		{
+			final List<Geometry> members = readMembers(r, dimension);
+			g = gf.createMultiLineString(members.toArray(new LineString[members.size()]));
+		}
+		else if (GMLConstants.GML_MULTI_POLYGON.equals(name))
+		{
+			final List<Geometry> members = readMembers(r, dimension);
+			g = gf.createMultiPolygon(members.toArray(new Polygon[members.size()]));
+		}
+		else if (GMLConstants.GML_MULTI_GEOMETRY.equals(name))
+		{
+			final List<Geometry> members = readMembers(r, dimension);
+			g = gf.createGeometryCollection(members.toArray(new Geometry[members.size()]));
+		}
+		else
+		{
+			throw new XMLStreamException("Unsupported GML geometry: " + name, r.getLocation());
+		}
+		
+		if (g.getSRID() != srid)
+			g.setSRID(srid);
+		
+		return g;
+	}
+	
+	private Polygon readPolygon(XMLStreamReader r, int dimension) throws XMLStreamException
+	{
+		LinearRing shell = null;
+		final List<LinearRing> holes = new ArrayList<LinearRing>();
+		while (r.nextTag() == XMLStreamConstants.START_ELEMENT)
+		{
+			final String name = r.getLocalName();
+			if (!GMLConstants.GML_EXTERIOR.equals(name) && !GMLConstants.GML_INTERIOR.equals(name))
+				throw new XMLStreamException("Unexpected element in Polygon: " + name, r.getLocation());
+			
+			final LinearRing ring = (LinearRing) readMember(r, dimension);
+			if (GMLConstants.GML_EXTERIOR.equals(name))
+				shell = ring;
+			else
+				holes.add(ring);
+		}
+		
+		if (shell == null)
+			throw new XMLStreamException("Cannot create a polygon without exterior", r.getLocation());
+		
+		return gf.createPolygon(shell, holes.toArray(new LinearRing[holes.size()]));
+	}
+	
+	private Geometry readCircle(XMLStreamReader r, int dimension) throws XMLStreamException
+	{
+		Coordinate center = null;
+		double radius = Double.NaN;
+		while (r.nextTag() == XMLStreamConstants.START_ELEMENT)
+		{
+			final String name = r.getLocalName();
+			if (GMLConstants.GML_COORD.equals(name))
+			{
+				ordinates.reset();
+				readOrdinates(r);
+				if (ordinates.size() == 0)
+					throw new XMLStreamException("Cannot create a coordinate without text to parse", r.getLocation());
+				center = ordinates.toCoordinate();
+			}
+			else if (GMLConstants.GML_RADIUS.equals(name))
+			{
+				radius = Double.parseDouble(r.getElementText().trim());
+			}
+			else
+				throw new XMLStreamException("Unexpected element in CircleByCenterPoint: " + name, r.getLocation());
+		}
+		
+		if (center == null || Double.isNaN(radius))
+			throw new XMLStreamException("Cannot create a circle without atleast one point and a radius", r.getLocation());
+		
+		return gf.createPoint(center).buffer(radius);
+	}
+	
+	/*
+	 * Reads all member elements, each containing exactly one geometry
+	 */
+	private List<Geometry> readMembers(XMLStreamReader r, int dimension) throws XMLStreamException
+	{
+		final List<Geometry> members = new ArrayList<Geometry>();
+		while (r.nextTag() == XMLStreamConstants.START_ELEMENT)
+			members.add(readMember(r, dimension));
+		
+		return members;
+	}
+	
+	/*
+	 * The reader is positioned at the START_ELEMENT of the member and will be positioned at its END_ELEMENT
+	 */
+	private Geometry readMember(XMLStreamReader r, int dimension) throws XMLStreamException
+	{
+		if (r.nextTag() != XMLStreamConstants.START_ELEMENT)
+			throw new XMLStreamException("Geometry Members must contain one geometry.", r.getLocation());
+		
+		final Geometry g = readGeometry(r, dimension);
+		
+		if (r.nextTag() != XMLStreamConstants.END_ELEMENT)
+			throw new XMLStreamException("Geometry Members may only contain one geometry.", r.getLocation());
+		
+		return g;
+	}
+	
+	/*
+	 * Reads the coordinates given either as one posList or as a series of pos (lowerCorner/upperCorner) elements
+	 */
+	private CoordinateSequence readCoordinates(XMLStreamReader r, int dimension) throws XMLStreamException
+	{
+		ordinates.reset();
+		while (r.nextTag() == XMLStreamConstants.START_ELEMENT)
+		{
+			final String name = r.getLocalName();
+			if (!GeometryStrategies.isOrdinateElement(name))
+				throw new XMLStreamException("Unexpected coordinate element: " + name, r.getLocation());
+			
+			dimension = getDimension(r, dimension);
+			readOrdinates(r);
+		}
+		
+		try
+		{
+			return ordinates.toCoordinateSequence(gf.getCoordinateSequenceFactory(), dimension);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new XMLStreamException(e.getMessage(), r.getLocation());
+		}
+	}
+
+	/*
+	 * Appends the ordinates of the current element to the decoder
+	 */
+	private void readOrdinates(XMLStreamReader r) throws XMLStreamException
+	{
+		int event;
+		try
+		{
+			while ((event = r.next()) != XMLStreamConstants.END_ELEMENT)
+			{
+				if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)
+					ordinates.decode(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+				else if (event == XMLStreamConstants.START_ELEMENT)
+					throw new XMLStreamException("Unexpected element in coordinates: " + r.getLocalName(), r.getLocation());
+			}
+			ordinates.finish();
+		}
+		catch (NumberFormatException e)
+		{
+			throw new XMLStreamException("Invalid ordinate: " + e.getMessage(), r.getLocation());
+		}
+	}
+
+	private static int getDimension(XMLStreamReader r, int defaultValue)
+	{
+		String dimension = r.getAttributeValue(null, "srsDimension");
+		if (dimension == null)
+			dimension = r.getAttributeValue(null, "dimension");
+		
+		if (dimension == null)
+			return defaultValue;
+		
+		try
+		{
+			final int d = Integer.parseInt(dimension.trim());
+			return (d == 2 || d == 3) ? d : defaultValue;
+		}
+		catch (NumberFormatException e)
+		{
+			return defaultValue;
+		}
+	}
+}
@@ -18,11 +18,15 @@
  
 package de.securedimensions.geoxacml.io.gml3;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
-import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.LineString;
@@ -58,6 +62,10 @@ import org.locationtech.jts.util.Assert;
  * 
  * <p>
  * This class does not rely on any external XML libraries. 
+ * The coordinates are read from the {@link CoordinateSequence}s of the geometry and formatted 
+ * into a buffer that is re-used for each line, so no String is created per ordinate. 
+ * The output is identical to {@link Double#toString(double)}. 
+ * An instance is not thread-safe.
  *
  * @author David Zwiers, Vivid Solutions 
  * @author Martin Davis 
@@ -80,6 +88,11 @@ public class GMLWriter {
 	
 	private String[] customElements = null;
 	
+	// the formatted coordinates of the current line
+	private final StringBuilder line = new StringBuilder(256);
+	
+	private char[] lineChars = new char[256];
+	
 	/**
 	 * Creates a writer which outputs GML with default settings.
 	 * The defaults are:
@@ -200,6 +213,17 @@ public class GMLWriter {
 		return writer.toString();
 	}
 
+	/**
+	 * Writes a {@link Geometry} in GML format as UTF-8 into an {@link OutputStream}.
+	 * 
+	 * @param geom Geometry to encode
+	 * @param out Stream to encode to, it is flushed but not closed
+	 * @throws IOException 
+	 */
+	public void write(Geometry geom, OutputStream out) throws IOException {
+		write(geom, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+	}
+
 	/**
 	 * Writes a {@link Geometry} in GML2 format into a {@link Writer}.
 	 * 
@@ -242,7 +266,7 @@ public class GMLWriter {
 		startLine(level, writer);
 		startGeomTag(GMLConstants.GML_POINT, p, writer);
 
-		write(new Coordinate[] { p.getCoordinate() }, writer, level + 1);
+		write(p.getCoordinateSequence(), writer, level + 1);
 
 		startLine(level, writer);
 		endGeomTag(GMLConstants.GML_POINT, writer);
@@ -254,7 +278,7 @@ public class GMLWriter {
 		startLine(level, writer);
 		startGeomTag(GMLConstants.GML_LINESTRING, ls, writer);
 
-		write(ls.getCoordinates(), writer, level + 1);
+		write(ls.getCoordinateSequence(), writer, level + 1);
 
 		startLine(level, writer);
 		endGeomTag(GMLConstants.GML_LINESTRING, writer);
@@ -266,7 +290,7 @@ public class GMLWriter {
 		startLine(level, writer);
 		startGeomTag(GMLConstants.GML_LINEARRING, lr, writer);
 
-		write(lr.getCoordinates(), writer, level + 1);
+		write(lr.getCoordinateSequence(), writer, level + 1);
 
 		startLine(level, writer);
 		endGeomTag(GMLConstants.GML_LINEARRING, writer);
@@ -371,61 +395,71 @@ public class GMLWriter {
 		endGeomTag(GMLConstants.GML_MULTI_GEOMETRY, writer);
 	}
 
-	private static final String coordinateSeparator = ",";
+	private static final char coordinateSeparator = ',';
 
-	private static final String tupleSeparator = " ";
+	private static final char tupleSeparator = ' ';
 
 	/**
-	 * Takes a list of coordinates and converts it to GML.<br>
+	 * Takes a sequence of coordinates and converts it to GML.<br>
 	 * 2d and 3d aware.
 	 * 
-	 * @param coords array of coordinates
+	 * @param coords sequence of coordinates
 	 * @throws IOException 
 	 */
-	private void write(Coordinate[] coords, Writer writer, int level)
+	private void write(CoordinateSequence coords, Writer writer, int level)
 			throws IOException {
 		startLine(level, writer);
 		startGeomTag(GMLConstants.GML_COORDINATES, null, writer);
 
+		final int size = coords.size();
 		int dim = 2;
 
-		if (coords.length > 0) {
-			if (!(Double.isNaN(coords[0].getZ())))
+		if (size > 0) {
+			if (!(Double.isNaN(coords.getZ(0))))
 				dim = 3;
 		}
 
 		boolean isNewLine = true;
-		for (int i = 0; i < coords.length; i++) {
+		for (int i = 0; i < size; i++) {
 			if (isNewLine) {
 				startLine(level + 1, writer);
 				isNewLine = false;
 			}
-			if (dim == 2) {
-				writer.write("" + coords[i].x);
-				writer.write(coordinateSeparator);
-				writer.write("" + coords[i].y);
-			} else if (dim == 3) {
-				writer.write("" + coords[i].x);
-				writer.write(coordinateSeparator);
-				writer.write("" + coords[i].y);
-				writer.write(coordinateSeparator);
-				writer.write("" + coords[i].getZ());
+			// StringBuilder.append(double) formats like Double.toString without creating a String
+			line.append(coords.getX(i));
+			line.append(coordinateSeparator);
+			line.append(coords.getY(i));
+			if (dim == 3) {
+				line.append(coordinateSeparator);
+				line.append(coords.getZ(i));
 			}
-			writer.write(tupleSeparator);
+			line.append(tupleSeparator);
 
 			// break output lines to prevent them from getting too long
-			if ((i + 1) % maxCoordinatesPerLine == 0 && i < coords.length - 1) {
-				writer.write("\n");
+			if ((i + 1) % maxCoordinatesPerLine == 0 && i < size - 1) {
+				line.append('\n');
+				writeLine(writer);
 				isNewLine = true;
 			}
 		}
-		if (!isNewLine)
-			writer.write("\n");
+		if (!isNewLine) {
+			line.append('\n');
+			writeLine(writer);
+		}
 
 		startLine(level, writer);
 		endGeomTag(GMLConstants.GML_COORDINATES, writer);
 	}
 
+	private void writeLine(Writer writer) throws IOException {
+		final int length = line.length();
+		if (lineChars.length < length)
+			lineChars = new char[Math.max(length, 2 * lineChars.length)];
+		line.getChars(0, length, lineChars, 0);
+		writer.write(lineChars, 0, length);
+		line.setLength(0);
+	}
+
 	private void startLine(int level, Writer writer) throws IOException {
 		for (int i = 0; i < level; i++)
 			writer.write(INDENT);
@@ -433,8 +467,8 @@ public class GMLWriter {
 
 	private void startGeomTag(String geometryName, Geometry g, Writer writer)
 			throws IOException {
-		writer.write("<"
-				+ ((prefix == null || "".equals(prefix)) ? "" : prefix + ":"));
+		writer.write('<');
+		writer.write(prefix());
 		writer.write(geometryName);
 		writeAttributes(g, writer);
 		writer.write(">\n");
@@ -473,7 +507,8 @@ public class GMLWriter {
 	
 	private void endGeomTag(String geometryName, Writer writer)
 			throws IOException {
-		writer.write("</" + prefix());
+		writer.write("</");
+		writer.write(prefix());
 		writer.write(geometryName);
 		writer.write(">\n");
 	}
@@ -251,7 +251,9 @@ public Object parse(Handler arg, GeometryFactory gf) throws SAXException {
     } 
     
     Coordinate[] p = new Coordinate[5];
-    p[0] = p[4] = c[0];
+    // separate instances, the axis swap must not hit the same coordinate twice 
+    p[0] = c[0];
+    p[4] = new Coordinate(c[0]);
     p[2] = c[1];
     p[1] = new Coordinate(c[1].x,c[0].y);
     p[3] = new Coordinate(c[0].x,c[1].y);
@@ -356,72 +358,34 @@ public Object parse(Handler arg, GeometryFactory gf) throws SAXException {
  
    @Override
 public Object parse(Handler arg, GeometryFactory gf) throws SAXException { 
-    // one child, either a coord 
-    // or a coordinate sequence 
+    // the text was decoded into ordinates while parsing 
  
-    if(arg.text == null || "".equals(arg.text)) 
+    if(arg.ordinates == null || arg.ordinates.size() == 0) 
      throw new SAXException("Cannot create a coordinate sequence without text to parse"); 
      
-    int dimension;
-    if(arg.attrs.getIndex("dimension")>=0) 
-    	dimension = Integer.parseInt(arg.attrs.getValue("dimension")); 
-    else 
-    	dimension = 2;
-
-    // now to start parse
-    String t = arg.text.toString().trim(); 
-    // remove tab and line breaks
-    t = t.replaceAll("[\\t\\n\\r]+"," "); 
-    // then replace all space sequences to one space
-    t = t.replaceAll("\\s+"," "); 
-     
-    StringTokenizer tokenizer = new StringTokenizer(t);
-    int nTuples = tokenizer.countTokens() / 2;
- 
-    CoordinateSequence cs = gf.getCoordinateSequenceFactory().create(nTuples, dimension); 
-    
-    int ix = 0;
-    while (tokenizer.hasMoreTokens())
-    {
-    	cs.setOrdinate(ix,0,Double.parseDouble(tokenizer.nextToken()));
-    	cs.setOrdinate(ix,1,Double.parseDouble(tokenizer.nextToken()));
-    	if (dimension == 3)
-    		cs.setOrdinate(ix,2,Double.parseDouble(tokenizer.nextToken()));
-    	else
-    		cs.setOrdinate(ix,2,Double.NaN);
-    	
-    	ix++;
-    }
-    
-    return cs;
+    try{ 
+     return arg.ordinates.toCoordinateSequence(gf.getCoordinateSequenceFactory(), getDimension(arg.attrs)); 
+    }catch(IllegalArgumentException e){ 
+     throw new SAXException("Cannot create a coordinate sequence: " + e.getMessage()); 
+    } 
    } 
   }); 
    
-  // pos 
-  strats.put(GMLConstants.GML_COORD.toLowerCase(),new ParseStrategy(){ 
+  ParseStrategy position = new ParseStrategy(){ 
  
    @Override
 public Object parse(Handler arg, GeometryFactory gf) throws SAXException { 
     // x SPACE y and optional SPACE z 
  
-    // now to start parse
-    String t = arg.text.toString().trim(); 
-    // remove tab and line breaks
-    t = t.replaceAll("[\\t\\n\\r]+"," "); 
-    // then replace all space sequences to one space
-    t = t.replaceAll("\\s+"," "); 
-
-    String[] axis = t.split(" ");
-    Coordinate c = new Coordinate(); 
-    c.x = Double.parseDouble(axis[0]); 
-    if(axis.length>1) 
-     c.y = Double.parseDouble(axis[1]); 
-    if(axis.length>2) 
-     c.z = Double.parseDouble(axis[2]); 
-     
-    return c; 
+    if(arg.ordinates == null || arg.ordinates.size() == 0) 
+     throw new SAXException("Cannot create a coordinate without text to parse"); 
+ 
+    return arg.ordinates.toCoordinate(); 
    } 
-  }); 
+  }; 
+   
+  // pos 
+  strats.put(GMLConstants.GML_COORD.toLowerCase(),position); 
    
   // radius 
   strats.put(GMLConstants.GML_RADIUS.toLowerCase(),new ParseStrategy(){ 
@@ -435,56 +399,10 @@ public Object parse(Handler arg, GeometryFactory gf) throws SAXException {
   }); 
    
   // lowerCorner 
-  strats.put(GMLConstants.GML_LOWER_CORNER.toLowerCase(),new ParseStrategy(){ 
- 
-   @Override
-public Object parse(Handler arg, GeometryFactory gf) throws SAXException { 
-    // x SPACE y and optional SPACE z 
- 
-    // now to start parse
-    String t = arg.text.toString().trim(); 
-    // remove tab and line breaks
-    t = t.replaceAll("[\\t\\n\\r]+"," "); 
-    // then replace all space sequences to one space
-    t = t.replaceAll("\\s+"," "); 
-
-    String[] axis = t.split(" ");
-    Coordinate c = new Coordinate(); 
-    c.x = Double.parseDouble(axis[0]); 
-    if(axis.length>1) 
-     c.y = Double.parseDouble(axis[1]); 
-    if(axis.length>2) 
-     c.z = Double.parseDouble(axis[2]); 
-     
-    return c; 
-   } 
-  }); 
+  strats.put(GMLConstants.GML_LOWER_CORNER.toLowerCase(),position); 
    
   // upperCorner 
-  strats.put(GMLConstants.GML_UPPER_CORNER.toLowerCase(),new ParseStrategy(){ 
- 
-   @Override
-public Object parse(Handler arg, GeometryFactory gf) throws SAXException { 
-    // x SPACE y and optional SPACE z 
- 
-    // now to start parse
-    String t = arg.text.toString().trim(); 
-    // remove tab and line breaks
-    t = t.replaceAll("[\\t\\n\\r]+"," "); 
-    // then replace all space sequences to one space
-    t = t.replaceAll("\\s+"," "); 
-
-    String[] axis = t.split(" ");
-    Coordinate c = new Coordinate(); 
-    c.x = Double.parseDouble(axis[0]); 
-    if(axis.length>1) 
-     c.y = Double.parseDouble(axis[1]); 
-    if(axis.length>2) 
-     c.z = Double.parseDouble(axis[2]); 
-     
-    return c; 
-   } 
-  }); 
+  strats.put(GMLConstants.GML_UPPER_CORNER.toLowerCase(),position); 
    
   ParseStrategy coord_child = new ParseStrategy(){ 
  
@@ -528,6 +446,43 @@ public Object parse(Handler arg, GeometryFactory gf) throws SAXException {
   return strats; 
  } 
   
+ /**
+  * @param localName the local name of an element 
+  * @return true if the text of the element is a list of ordinates 
+  */ 
+ static boolean isOrdinateElement(String localName){ 
+  return GMLConstants.GML_COORDINATES.equalsIgnoreCase(localName) 
+    || GMLConstants.GML_COORD.equalsIgnoreCase(localName) 
+    || GMLConstants.GML_LOWER_CORNER.equalsIgnoreCase(localName) 
+    || GMLConstants.GML_UPPER_CORNER.equalsIgnoreCase(localName); 
+ } 
+  
+ /**
+  * @param attrs the attributes of a coordinate element 
+  * @return the value of the srsDimension or dimension attribute, 2 by default 
+  * @throws SAXException if the dimension is not 2 or 3 
+  */ 
+ static int getDimension(Attributes attrs) throws SAXException{ 
+  String value = null; 
+  if(attrs != null){ 
+   if(attrs.getIndex("srsDimension")>=0) 
+    value = attrs.getValue("srsDimension"); 
+   else if(attrs.getIndex("dimension")>=0) 
+    value = attrs.getValue("dimension"); 
+  } 
+  if(value == null) 
+   return 2; 
+   
+  try{ 
+   int dimension = Integer.parseInt(value.trim()); 
+   if(dimension == 2 || dimension == 3) 
+    return dimension; 
+  }catch(NumberFormatException e){ 
+   // reported below 
+  } 
+  throw new SAXException("Unsupported coordinate dimension: " + value); 
+ } 
+  
  static int getSrid(Attributes attrs, int defaultValue){ 
   String srs = null; 
   if(attrs.getIndex(GMLConstants.GML_ATTR_SRSNAME)>=0) 
@@ -535,6 +490,15 @@ public Object parse(Handler arg, GeometryFactory gf) throws SAXException {
   else if(attrs.getIndex(GMLConstants.GML_NAMESPACE,GMLConstants.GML_ATTR_SRSNAME)>=0) 
    srs = attrs.getValue(GMLConstants.GML_NAMESPACE,GMLConstants.GML_ATTR_SRSNAME); 
    
+  return parseSrid(srs, defaultValue); 
+ } 
+  
+ /**
+  * @param srs the srsName, may be null 
+  * @param defaultValue returned if the srsName does not contain a numeric SRID 
+  * @return the SRID 
+  */ 
+ static int parseSrid(String srs, int defaultValue){ 
   if(srs != null){ 
    srs = srs.trim(); 
    if(srs != null && !"".equals(srs)){ 
@@ -0,0 +1,307 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.io.gml3;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+
+import de.securedimensions.geoxacml.datatype.CompactCoordinateSequenceFactory;
+
+/**
+ * Decodes the text of GML coordinate elements (<tt>posList</tt>, <tt>pos</tt>, ...) into a primitive <tt>double</tt> buffer.
+ * <p>
+ * The text is passed in chunks as received by {@link org.xml.sax.ContentHandler#characters(char[], int, int)}. 
+ * Ordinates are separated by whitespace or comma and parsed directly from the character buffer without creating Strings. 
+ * Only a token split between two chunks is copied. Numbers with more than 15 significant digits, large exponents or 
+ * special values (NaN, Infinity) are passed to {@link Double#parseDouble(String)} to guarantee identical results.
+ * <p>
+ * If the axes are swapped (see {@link #setSwapXY(boolean)}), the first two ordinates of each coordinate are exchanged 
+ * while the coordinates are created, so that no separate pass over the geometry is required to normalize the axis order.
+ * <p>
+ * An instance is re-used for all coordinate elements of a document and is not thread-safe.
+ * 
+ * @author Andreas Matheus, Secure Dimensions GmbH
+ */
+final class OrdinateDecoder
+{
+	private static final int MAX_FAST_DIGITS = 15;
+	
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	
+	private double[] ordinates = new double[64];
+	
+	private int size = 0;
+	
+	// token split between two chunks
+	private char[] carry = new char[32];
+	
+	private int carryLength = 0;
+	
+	private boolean swapXY = false;
+	
+	/**
+	 * @param swapXY true if the first two ordinates of each coordinate are given in the opposite order, e.g. LON/LAT for CRS84
+	 */
+	void setSwapXY(boolean swapXY)
+	{
+		this.swapXY = swapXY;
+	}
+	
+	/**
+	 * Prepares the decoder for the next coordinate element
+	 */
+	void reset()
+	{
+		size = 0;
+		carryLength = 0;
+	}
+	
+	/**
+	 * Decodes a chunk of text
+	 * 
+	 * @param ch the characters
+	 * @param start the start position in the array
+	 * @param length the number of characters to read from the array
+	 * @throws NumberFormatException if an ordinate is not a number
+	 */
+	void decode(char[] ch, int start, int length)
+	{
+		final int end = start + length;
+		int i = start;
+		
+		// complete a token from the previous chunk
+		if (carryLength > 0)
+		{
+			while (i < end && !isSeparator(ch[i]))
+				appendCarry(ch[i++]);
+			
+			if (i == end)
+				return;
+			
+			add(parseDouble(carry, 0, carryLength));
+			carryLength = 0;
+		}
+		
+		while (i < end)
+		{
+			while (i < end && isSeparator(ch[i]))
+				i++;
+			
+			final int tokenStart = i;
+			while (i < end && !isSeparator(ch[i]))
+				i++;
+			
+			if (i == end)
+			{
+				// the token may continue in the next chunk
+				for (int j = tokenStart; j < end; j++)
+					appendCarry(ch[j]);
+			}
+			else
+			{
+				add(parseDouble(ch, tokenStart, i - tokenStart));
+			}
+		}
+	}
+	
+	/**
+	 * Completes the decoding of the current element
+	 * 
+	 * @throws NumberFormatException if the last ordinate is not a number
+	 */
+	void finish()
+	{
+		if (carryLength > 0)
+		{
+			add(parseDouble(carry, 0, carryLength));
+			carryLength = 0;
+		}
+	}
+	
+	/**
+	 * @return the number of decoded ordinates
+	 */
+	int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Creates a coordinate from the decoded ordinates of a single position
+	 * 
+	 * @return the coordinate; Y is 0 if only one ordinate was decoded
+	 */
+	Coordinate toCoordinate()
+	{
+		final Coordinate c = new Coordinate();
+		if (size > 1)
+		{
+			c.x = ordinates[swapXY ? 1 : 0];
+			c.y = ordinates[swapXY ? 0 : 1];
+		}
+		else
+			c.x = ordinates[0];
+		if (size > 2)
+			c.z = ordinates[2];
+		
+		return c;
+	}
+	
+	/**
+	 * Creates a coordinate sequence of the given factory holding a copy of the decoded ordinates
+	 * 
+	 * @param factory the coordinate sequence factory of the geometry factory
+	 * @param dimension number of ordinates per coordinate
+	 * @return the coordinate sequence
+	 * @throws IllegalArgumentException if the number of ordinates is not a multiple of the dimension
+	 */
+	CoordinateSequence toCoordinateSequence(CoordinateSequenceFactory factory, int dimension)
+	{
+		if (size % dimension != 0)
+			throw new IllegalArgumentException("Number of ordinates " + size + " does not match the dimension " + dimension);
+		
+		final double[] coords = new double[size];
+		if (swapXY)
+		{
+			for (int i = 0; i < size; i += dimension)
+			{
+				coords[i] = ordinates[i + 1];
+				coords[i + 1] = ordinates[i];
+				if (dimension == 3)
+					coords[i + 2] = ordinates[i + 2];
+			}
+		}
+		else
+			System.arraycopy(ordinates, 0, coords, 0, size);
+		return CompactCoordinateSequenceFactory.fromOrdinates(factory, coords, dimension);
+	}
+	
+	private void add(double ordinate)
+	{
+		if (size == ordinates.length)
+		{
+			final double[] tmp = new double[size * 2];
+			System.arraycopy(ordinates, 0, tmp, 0, size);
+			ordinates = tmp;
+		}
+		ordinates[size++] = ordinate;
+	}
+	
+	private void appendCarry(char c)
+	{
+		if (carryLength == carry.length)
+		{
+			final char[] tmp = new char[carryLength * 2];
+			System.arraycopy(carry, 0, tmp, 0, carryLength);
+			carry = tmp;
+		}
+		carry[carryLength++] = c;
+	}
+	
+	private static boolean isSeparator(char c)
+	{
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == ',';
+	}
+	
+	/**
+	 * Parses a decimal number like <tt>-77.035278</tt> or <tt>1.5E-3</tt>. 
+	 * The result is exact if the mantissa has at most 15 significant digits and the decimal exponent is within 22, 
+	 * as both the mantissa and the power of ten are then exactly representable as double. 
+	 * All other input is parsed by {@link Double#parseDouble(String)}.
+	 */
+	static double parseDouble(char[] b, int off, int len)
+	{
+		final int end = off + len;
+		int i = off;
+		boolean negative = false;
+		if (i < end && (b[i] == '-' || b[i] == '+'))
+		{
+			negative = b[i] == '-';
+			i++;
+		}
+		
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		
+		while (i < end && b[i] >= '0' && b[i] <= '9')
+		{
+			hasDigits = true;
+			mantissa = mantissa * 10 + (b[i++] - '0');
+			if (mantissa != 0)
+				digits++;
+			if (digits > MAX_FAST_DIGITS)
+				return slowParseDouble(b, off, len);
+		}
+		
+		if (i < end && b[i] == '.')
+		{
+			i++;
+			while (i < end && b[i] >= '0' && b[i] <= '9')
+			{
+				hasDigits = true;
+				mantissa = mantissa * 10 + (b[i++] - '0');
+				exponent--;
+				if (mantissa != 0)
+					digits++;
+				if (digits > MAX_FAST_DIGITS)
+					return slowParseDouble(b, off, len);
+			}
+		}
+		
+		if (!hasDigits)
+			return slowParseDouble(b, off, len);
+		
+		if (i < end && (b[i] == 'e' || b[i] == 'E'))
+		{
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (b[i] == '-' || b[i] == '+'))
+			{
+				negativeExponent = b[i] == '-';
+				i++;
+			}
+			
+			int exp = 0;
+			final int expStart = i;
+			while (i < end && b[i] >= '0' && b[i] <= '9' && exp < 1000)
+				exp = exp * 10 + (b[i++] - '0');
+			
+			if (i == expStart)
+				return slowParseDouble(b, off, len);
+			
+			exponent += negativeExponent ? -exp : exp;
+		}
+		
+		if (i != end || exponent > 22 || exponent < -22)
+			return slowParseDouble(b, off, len);
+		
+		final double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+	
+	private static double slowParseDouble(char[] b, int off, int len)
+	{
+		return Double.parseDouble(new String(b, off, len));
+	}
+}
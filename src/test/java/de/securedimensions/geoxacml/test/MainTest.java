@@ -10,6 +10,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.securedimensions.geoxacml.test.datatype.GeometryAttributeTest;
+import de.securedimensions.geoxacml.test.function.TopologicalFunctionsTest;
+import de.securedimensions.geoxacml.test.index.GridCoveringTest;
+import de.securedimensions.geoxacml.test.io.TWKBReaderTest;
 
 /**
  * 
@@ -17,7 +20,7 @@ import de.securedimensions.geoxacml.test.datatype.GeometryAttributeTest;
  * 
  */
 @RunWith(Suite.class)
-@SuiteClasses(value = { GeometryAttributeTest.class })
+@SuiteClasses(value = { GeometryAttributeTest.class, GridCoveringTest.class, TWKBReaderTest.class, TopologicalFunctionsTest.class })
 public class MainTest
 {
 	/**
@@ -33,6 +33,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -65,14 +66,26 @@ public class GeometryAttributeTest
 		Processor processor = new Processor(false);
 		XPathCompiler xPathCompiler = processor.newXPathCompiler();
 
-		List<Serializable> gml2, gml2Swapped, gml3, gml3Swapped;
+		List<Serializable> gml2, gml2Swapped, gml3, gml3Swapped, gml3PosList, gml3CRS84;
 		gml2 = new ArrayList<Serializable>();
 		gml2Swapped = new ArrayList<Serializable>();
 
 		gml3 = new ArrayList<Serializable>();
 		gml3Swapped = new ArrayList<Serializable>();
-
-		String gml2String, gml2StringSwapped, gml3String, gml3StringSwapped;
+		gml3PosList = new ArrayList<Serializable>();
+		gml3CRS84 = new ArrayList<Serializable>();
+		
+		// GeoJSON object in a XACML JSON request, parsed with org.json like the AuthzForce JSON request parser
+		JSONObject jsonRequest = new JSONObject("{\"Request\": {\"Category\": [{"
+				+ "\"CategoryId\": \"urn:oasis:names:tc:xacml:3.0:attribute-category:resource\", \"Attribute\": [{"
+				+ "\"AttributeId\": \"urn:ogc:def:geoxacml:1.0:geometry\", \"DataType\": \"urn:ogc:def:dataType:geoxacml:1.0:geometry\", "
+				+ "\"Value\": {\"type\": \"LineString\", \"coordinates\": [[-77.035278, 38.889444], [-77.0502, 38.8893]]}}]}]}}");
+		JSONObject geoJSONObject = jsonRequest.getJSONObject("Request").getJSONArray("Category").getJSONObject(0)
+				.getJSONArray("Attribute").getJSONObject(0).getJSONObject("Value");
+		List<Serializable> geoJSON = new ArrayList<Serializable>();
+		geoJSON.add((Serializable) geoJSONObject.toMap());
+
+		String gml2String, gml2StringSwapped, gml3String, gml3StringSwapped, gml3PosListString, gml3CRS84String;
 		
 		gml2String = "\n"
 				+ "<gml:Point xmlns:gml=\"http://www.opengis.net/gml\" gml:id=\"WashingtonMonument\"\n" + 
@@ -92,6 +105,17 @@ public class GeometryAttributeTest
 				"    			 srsName=\"EPSG:4326\"><gml:pos srsDimension=\"2\">-77.035278 38.889444</gml:pos>\n" + 
 				"  			</gml:Point>";
 
+		gml3PosListString = "<gml:LineString xmlns:gml=\"http://www.opengis.net/gml/3.2\" gml:id=\"Mall\"\n" + 
+				"    			 srsName=\"EPSG:4326\"><gml:posList srsDimension=\"3\">\n" + 
+				"    			 38.889444 -77.035278 0.0\n" + 
+				"    			 38.8893\t-77.0502 1.5E1\n" + 
+				"  			</gml:posList></gml:LineString>";
+
+		gml3CRS84String = "<gml:LineString xmlns:gml=\"http://www.opengis.net/gml/3.2\" gml:id=\"Mall\"\n" +
+				"    			 srsName=\"urn:ogc:def:crs:OGC::CRS84\"><gml:posList srsDimension=\"2\">\n" + 
+				"    			 -77.035278 38.889444 -77.0502 38.8893\n" + 
+				"  			</gml:posList></gml:LineString>";
+
 		try {
 			org.w3c.dom.Document document;
 			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -111,6 +135,12 @@ public class GeometryAttributeTest
 			document = builder.parse(new InputSource(new StringReader(gml3StringSwapped)));  
 			gml3Swapped.add((Serializable)document.getDocumentElement());
 
+			document = builder.parse(new InputSource(new StringReader(gml3PosListString)));  
+			gml3PosList.add((Serializable)document.getDocumentElement());
+
+			document = builder.parse(new InputSource(new StringReader(gml3CRS84String)));  
+			gml3CRS84.add((Serializable)document.getDocumentElement());
+
 		} catch (ParserConfigurationException e) {
 			e.printStackTrace();
 		} catch (SAXException e) {
@@ -128,6 +158,8 @@ public class GeometryAttributeTest
 			// GML3 encoding
 			{ gml3, null, xPathCompiler, "GML3 encoding with correct axes order", "SRID=4326;POINT (38.889444 -77.035278)", true},
 			{ gml3Swapped, null, xPathCompiler, "GML3 encoding with swapped axes order", "SRID=4326;POINT (38.889444 -77.035278)", false},
+			{ gml3PosList, null, xPathCompiler, "GML3 encoding with a 3D posList", "SRID=4326;LINESTRING (38.889444 -77.035278, 38.8893 -77.0502)", true},
+			{ gml3CRS84, null, xPathCompiler, "GML3 encoding with CRS84 axes order", "SRID=4326;LINESTRING (38.889444 -77.035278, 38.8893 -77.0502)", true},
 
 			// WKT encoding with CRS in otherXMLAttributes
 			{ "POINT(38.889444 -77.035278)", otherXmlAttributes, xPathCompiler, "WKT with using CRS as attribute in AttributeValue", "SRID=4326;POINT (38.889444 -77.035278)", true},
@@ -135,10 +167,12 @@ public class GeometryAttributeTest
 			// WKT encoding plus axes order (CRS=EPSG:4326)
 			{ "POINT(38.889444 -77.035278)", otherXmlAttributes, xPathCompiler, "WKT with correct axes order", "SRID=4326;POINT (38.889444 -77.035278)", true},
 			{ "POINT(-77.035278 38.889444)", otherXmlAttributes, xPathCompiler, "WKT with swapped axes", "SRID=4326;POINT (38.889444 -77.035278)", false},
+			{ "MULTIPOINT((38.889444 -77.035278))", otherXmlAttributes, xPathCompiler, "WKT MULTIPOINT", "SRID=4326;MULTIPOINT ((38.889444 -77.035278))", true},
 						
 			// EWKT encoding
 			{ "SRID=4326;POINT(38.889444 -77.035278)", null, null, "EWKT with using SRID prefix", "SRID=4326;POINT (38.889444 -77.035278)", true},
 			{ "CRS=EPSG:4326;POINT(38.889444 -77.035278)", null, null, "EWKT with using CRS prefix", "SRID=4326;POINT (38.889444 -77.035278)", true},
+			{ "srid=4326;point(38.889444 -77.035278)", null, null, "EWKT with lower case prefix and keyword", "SRID=4326;POINT (38.889444 -77.035278)", true},
 			
 			// EWKT encoding plus axes order tests
 			{ "CRS=EPSG:4326;POINT(-77.035278 38.889444)", null, null, "EWKT with swapped axes", "SRID=4326;POINT (38.889444 -77.035278)", false},
@@ -156,9 +190,19 @@ public class GeometryAttributeTest
 			{ "CRS=http://www.opengis.net/def/crs/EPSG/0/4326;POINT(-77.035278 38.889444)", null, null, "EWKT with swapped axes", "SRID=4326;POINT (38.889444 -77.035278)", false},
 			{ "CRS=http://www.opengis.net/def/crs/EPSG/0/4326;POINT(38.889444 -77.035278)", null, null, "EWKT with correct axes order", "SRID=4326;POINT (38.889444 -77.035278)", true},
 			
+			// WKB, EWKB and TWKB encodings
+			{ "0101000000CCCF0D4DD97143402C11A8FE414253C0", otherXmlAttributes, xPathCompiler, "Hex WKB with using CRS as attribute in AttributeValue", "SRID=4326;POINT (38.889444 -77.035278)", true},
+			{ "AQEAAADMzw1N2XFDQCwRqP5BQlPA", otherXmlAttributes, xPathCompiler, "Base64 WKB with using CRS as attribute in AttributeValue", "SRID=4326;POINT (38.889444 -77.035278)", true},
+			{ "0101000020E6100000CCCF0D4DD97143402C11A8FE414253C0", null, null, "Hex EWKB with embedded SRID", "SRID=4326;POINT (38.889444 -77.035278)", true},
+			{ "SRID=4326;AQEAAADMzw1N2XFDQCwRqP5BQlPA", null, null, "Base64 WKB with SRID prefix", "SRID=4326;POINT (38.889444 -77.035278)", true},
+			{ "TWKB:wQDIn4slm9y7SQ==", otherXmlAttributes, xPathCompiler, "TWKB with using CRS as attribute in AttributeValue", "SRID=4326;POINT (38.889444 -77.035278)", true},
+			
 			// GeoJSON encoding
 			{ "{ \"type\": \"Point\", \"coordinates\": [38.889444, -77.035278] }", null, null, "GeoJSON encoding with swapped axes order", "SRID=4326;POINT (38.889444 -77.035278)", false},
-			{ "{ \"type\": \"Point\", \"coordinates\": [-77.035278, 38.889444] }", null, null, "GeoJSON encoding with correct axes order", "SRID=4326;POINT (38.889444 -77.035278)", true}
+			{ "{ \"type\": \"Point\", \"coordinates\": [-77.035278, 38.889444] }", null, null, "GeoJSON encoding with correct axes order", "SRID=4326;POINT (38.889444 -77.035278)", true},
+			{ "{ \"coordinates\": [[[0, 0], [10, 0], [10, 10], [0, 10], [0, 0]], [[2, 2], [2, 4], [4, 4], [2, 2]]], \"bbox\": [0, 0, 10, 10], \"type\": \"Polygon\" }", null, null, "GeoJSON Polygon with hole, bbox and coordinates before type", "SRID=4326;POLYGON ((0 0, 0 10, 10 10, 10 0, 0 0), (2 2, 4 2, 4 4, 2 2))", true},
+			{ geoJSONObject, null, null, "GeoJSON object from a JSON request", "SRID=4326;LINESTRING (38.889444 -77.035278, 38.8893 -77.0502)", true},
+			{ geoJSON, null, null, "GeoJSON object from a JSON request as Map", "SRID=4326;LINESTRING (38.889444 -77.035278, 38.8893 -77.0502)", true}
 		};
 		return Arrays.asList(data);
 	}
@@ -190,6 +234,8 @@ public class GeometryAttributeTest
 		
 		if (this.value instanceof String)
 				gv = GeometryValue.FACTORY.getInstance((String)this.value, this.otherXmlAttributes, this.xPathCompiler);
+			else if (this.value instanceof JSONObject)
+				gv = GeometryValue.FACTORY.getInstance((JSONObject)this.value);
 			else
 				gv = GeometryValue.FACTORY.getInstance((List<Serializable>)this.value, this.otherXmlAttributes, this.xPathCompiler);
 			
@@ -197,19 +243,8 @@ public class GeometryAttributeTest
 		LOGGER.debug("GeometryValue: " + gv);
 		LOGGER.debug("Expected result: " + result);
 		isValidResult = gv.equals(expected);
-		try
-		{
-			Assert.assertEquals("Test failed on: '" + this.value + "' (" + this.comment + ")", isValid, isValidResult);
-			LOGGER.info("Test Success\n");
-		}
-		catch (AssertionError e)
-		{
-			LOGGER.error(e.getLocalizedMessage() + '\n');
-		}
-		finally
-		{
-			
-		}
+		Assert.assertEquals("Test failed on: '" + this.value + "' (" + this.comment + ")", isValid, isValidResult);
+		LOGGER.info("Test Success\n");
 	}
 
 }
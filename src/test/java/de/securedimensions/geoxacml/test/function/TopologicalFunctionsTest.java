@@ -0,0 +1,354 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.test.function;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.BiPredicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.locationtech.jts.util.GeometricShapeFactory;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.ConstantPrimitiveAttributeValueExpression;
+import org.ow2.authzforce.core.pdp.api.expression.Expression;
+import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunctionCall;
+import org.ow2.authzforce.core.pdp.api.func.SingleParameterTypedFirstOrderFunction;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+
+import de.securedimensions.geoxacml.crs.Reprojection;
+import de.securedimensions.geoxacml.datatype.GeometryValue;
+import de.securedimensions.geoxacml.function.TopologicalFunctions;
+
+/**
+ * 
+ * GeoXACML3 topological functions test: the results of the envelope short-circuits, the point in area tests, 
+ * the prepared constants and the grid covering must be those of the plain JTS predicates. 
+ */
+public class TopologicalFunctionsTest
+{
+	private static final GeometryFactory GF = new GeometryFactory(new PrecisionModel(), 4326);
+	
+	private static final class Predicate
+	{
+		private final SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue> function;
+		private final String id;
+		private final BiPredicate<Geometry, Geometry> jts;
+		
+		private Predicate(final SingleParameterTypedFirstOrderFunction<BooleanValue, GeometryValue> function, final String id, final BiPredicate<Geometry, Geometry> jts)
+		{
+			this.function = function;
+			this.id = id;
+			this.jts = jts;
+		}
+	}
+	
+	private static final List<Predicate> PREDICATES = Arrays.asList(
+			new Predicate(new TopologicalFunctions.Equals(), TopologicalFunctions.Equals.ID, Geometry::equalsTopo),
+			new Predicate(new TopologicalFunctions.Disjoint(), TopologicalFunctions.Disjoint.ID, Geometry::disjoint),
+			new Predicate(new TopologicalFunctions.Touches(), TopologicalFunctions.Touches.ID, Geometry::touches),
+			new Predicate(new TopologicalFunctions.Crosses(), TopologicalFunctions.Crosses.ID, Geometry::crosses),
+			new Predicate(new TopologicalFunctions.Within(), TopologicalFunctions.Within.ID, Geometry::within),
+			new Predicate(new TopologicalFunctions.Contains(), TopologicalFunctions.Contains.ID, Geometry::contains),
+			new Predicate(new TopologicalFunctions.Overlaps(), TopologicalFunctions.Overlaps.ID, Geometry::overlaps),
+			new Predicate(new TopologicalFunctions.Intersects(), TopologicalFunctions.Intersects.ID, Geometry::intersects));
+	
+	private static Geometry wkt(final String wkt)
+	{
+		try
+		{
+			return new WKTReader(GF).read(wkt);
+		}
+		catch (ParseException e)
+		{
+			throw new IllegalArgumentException(e);
+		}
+	}
+	
+	private static Geometry point(final double x, final double y)
+	{
+		return GF.createPoint(new Coordinate(x, y));
+	}
+	
+	// a zone with a hole
+	private static final String ZONE = "POLYGON ((50 7, 51 7, 51 8, 50 8, 50 7), (50.4 7.4, 50.6 7.4, 50.6 7.6, 50.4 7.6, 50.4 7.4))";
+	
+	/*
+	 * Points in the interior, on the shell and the hole, in the hole and outside, within and outside of the envelope
+	 */
+	private static List<Geometry> points()
+	{
+		return new ArrayList<Geometry>(Arrays.asList(
+				point(50.2, 7.2), point(50.9, 7.9),
+				point(50, 7), point(50.5, 7), point(51, 7.5), point(50.4, 7.5), point(50.6, 7.6),
+				point(50.5, 7.5),
+				point(52, 7.5), point(50.5, 9), point(49, 6)));
+	}
+	
+	/*
+	 * Other geometries: inside, overlapping, crossing, touching and far away from the zone
+	 */
+	private static List<Geometry> others()
+	{
+		return new ArrayList<Geometry>(Arrays.asList(
+				wkt(ZONE),
+				wkt("POLYGON ((50.1 7.1, 50.3 7.1, 50.3 7.3, 50.1 7.3, 50.1 7.1))"),
+				wkt("POLYGON ((50.8 7.8, 51.2 7.8, 51.2 8.2, 50.8 8.2, 50.8 7.8))"),
+				wkt("POLYGON ((51 7.2, 51.5 7.2, 51.5 7.4, 51 7.4, 51 7.2))"),
+				wkt("POLYGON ((60 20, 61 20, 61 21, 60 21, 60 20))"),
+				wkt("LINESTRING (49.5 7.5, 51.5 7.5)"),
+				wkt("LINESTRING (50.1 7.1, 50.2 7.2)"),
+				wkt("LINESTRING (51 7, 52 6)"),
+				wkt("MULTIPOINT ((50.2 7.2), (52 7.5))")));
+	}
+	
+	private static Predicate predicate(final String id)
+	{
+		for (Predicate predicate : PREDICATES)
+			if (predicate.id.equals(id))
+				return predicate;
+		
+		throw new IllegalArgumentException(id);
+	}
+	
+	/*
+	 * The arguments are passed at evaluation time unless they are the constants of the call
+	 */
+	private static void assertSameAsJTS(final Predicate predicate, final FirstOrderFunctionCall<BooleanValue> call, final GeometryValue a, final GeometryValue b, final boolean constants) throws IndeterminateEvaluationException
+	{
+		final boolean expected = predicate.jts.test(a.getUnderlyingValue(), b.getUnderlyingValue());
+		final BooleanValue result = constants ? call.evaluate(null, Optional.empty()) : call.evaluate(null, Optional.empty(), a, b);
+		Assert.assertEquals(predicate.id + "(" + a + ", " + b + ")", BooleanValue.valueOf(expected), result);
+	}
+	
+	/*
+	 * Compares both argument orders of all predicates with JTS, the arguments given at evaluation time
+	 */
+	private static void assertSameAsJTS(final GeometryValue zone, final List<Geometry> geometries) throws IndeterminateEvaluationException
+	{
+		for (Predicate predicate : PREDICATES)
+		{
+			final FirstOrderFunctionCall<BooleanValue> call = predicate.function.newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE);
+			for (Geometry g : geometries)
+			{
+				final GeometryValue gv = new GeometryValue(g);
+				assertSameAsJTS(predicate, call, zone, gv, false);
+				assertSameAsJTS(predicate, call, gv, zone, false);
+			}
+		}
+	}
+	
+	private static FirstOrderFunctionCall<BooleanValue> newConstantCall(final Predicate predicate, final GeometryValue a, final GeometryValue b)
+	{
+		final List<Expression<?>> args = Arrays.<Expression<?>>asList(
+				new ConstantPrimitiveAttributeValueExpression<GeometryValue>(GeometryValue.DATATYPE, a), 
+				new ConstantPrimitiveAttributeValueExpression<GeometryValue>(GeometryValue.DATATYPE, b));
+		return predicate.function.newCall(args);
+	}
+	
+	@Test
+	public void testPointInArea() throws IndeterminateEvaluationException
+	{
+		final GeometryValue zone = new GeometryValue(wkt(ZONE));
+		final long before = TopologicalFunctions.getCounters(TopologicalFunctions.Within.ID).getPointInAreaTests();
+		
+		assertSameAsJTS(zone, points());
+		
+		// within(point, zone) was answered by locating the point
+		Assert.assertTrue(TopologicalFunctions.getCounters(TopologicalFunctions.Within.ID).getPointInAreaTests() > before);
+	}
+	
+	@Test
+	public void testPointOnBoundary() throws IndeterminateEvaluationException
+	{
+		final GeometryValue zone = new GeometryValue(wkt(ZONE));
+		final GeometryValue vertex = new GeometryValue(point(50, 7));
+		final GeometryValue onHole = new GeometryValue(point(50.5, 7.4));
+		
+		for (GeometryValue p : Arrays.asList(vertex, onHole))
+		{
+			// a point on the boundary is not in the interior: not within, not contained, but touching and intersecting
+			Assert.assertEquals(BooleanValue.FALSE, new TopologicalFunctions.Within().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE).evaluate(null, Optional.empty(), p, zone));
+			Assert.assertEquals(BooleanValue.FALSE, new TopologicalFunctions.Contains().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE).evaluate(null, Optional.empty(), zone, p));
+			Assert.assertEquals(BooleanValue.TRUE, new TopologicalFunctions.Touches().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE).evaluate(null, Optional.empty(), p, zone));
+			Assert.assertEquals(BooleanValue.TRUE, new TopologicalFunctions.Intersects().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE).evaluate(null, Optional.empty(), zone, p));
+			Assert.assertEquals(BooleanValue.FALSE, new TopologicalFunctions.Disjoint().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE).evaluate(null, Optional.empty(), p, zone));
+		}
+	}
+	
+	@Test
+	public void testEnvelopeShortCircuit() throws IndeterminateEvaluationException
+	{
+		final GeometryValue zone = new GeometryValue(wkt(ZONE));
+		final List<Geometry> far = Arrays.asList(point(60, 20), wkt("POLYGON ((60 20, 61 20, 61 21, 60 21, 60 20))"), wkt("LINESTRING (60 20, 61 21)"), 
+				// the envelopes intersect, but neither covers the other
+				wkt("POLYGON ((50.5 7.5, 52 7.5, 52 9, 50.5 9, 50.5 7.5))"));
+		
+		for (Predicate predicate : PREDICATES)
+		{
+			final long before = TopologicalFunctions.getCounters(predicate.id).getEnvelopeShortCircuits();
+			final FirstOrderFunctionCall<BooleanValue> call = predicate.function.newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE);
+			for (Geometry g : far)
+			{
+				final GeometryValue gv = new GeometryValue(g);
+				assertSameAsJTS(predicate, call, zone, gv, false);
+				assertSameAsJTS(predicate, call, gv, zone, false);
+			}
+			// at least the geometries far away were rejected by their envelopes
+			Assert.assertTrue(predicate.id, TopologicalFunctions.getCounters(predicate.id).getEnvelopeShortCircuits() >= before + 6);
+		}
+	}
+	
+	@Test
+	public void testOtherGeometries() throws IndeterminateEvaluationException
+	{
+		assertSameAsJTS(new GeometryValue(wkt(ZONE)), others());
+		assertSameAsJTS(new GeometryValue(wkt("LINESTRING (50 7, 51 8)")), others());
+	}
+	
+	@Test
+	public void testConstantArgument() throws IndeterminateEvaluationException
+	{
+		final List<Geometry> geometries = points();
+		geometries.addAll(others());
+		
+		for (Predicate predicate : PREDICATES)
+		{
+			for (Geometry g : geometries)
+			{
+				final GeometryValue zone = new GeometryValue(wkt(ZONE));
+				final GeometryValue gv = new GeometryValue(g);
+				assertSameAsJTS(predicate, newConstantCall(predicate, zone, gv), zone, gv, true);
+				assertSameAsJTS(predicate, newConstantCall(predicate, gv, zone), gv, zone, true);
+			}
+		}
+	}
+	
+	@Test
+	public void testPreparationThreshold() throws IndeterminateEvaluationException
+	{
+		final GeometryValue zone = new GeometryValue(wkt(ZONE));
+		final GeometryValue request = new GeometryValue(wkt("POLYGON ((50.1 7.1, 50.3 7.1, 50.3 7.3, 50.1 7.3, 50.1 7.1))"));
+		final FirstOrderFunctionCall<BooleanValue> intersects = new TopologicalFunctions.Intersects().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE);
+		
+		// one evaluation probes both arguments, but a value used once is not prepared
+		intersects.evaluate(null, Optional.empty(), request, zone);
+		Assert.assertFalse(request.usePreparedGeometry());
+		Assert.assertFalse(zone.usePreparedGeometry());
+		
+		intersects.evaluate(null, Optional.empty(), zone, new GeometryValue(point(50.2, 7.2)));
+		Assert.assertTrue(zone.usePreparedGeometry());
+		Assert.assertFalse(request.usePreparedGeometry());
+	}
+	
+	@Test
+	public void testConstantPreparation()
+	{
+		final GeometryValue zone = new GeometryValue(wkt(ZONE));
+		final GeometryValue other = new GeometryValue(wkt(ZONE));
+		
+		newConstantCall(predicate(TopologicalFunctions.Equals.ID), zone, new GeometryValue(point(50.2, 7.2)));
+		
+		// the constant was prepared by newCall, the other value is used for the first time
+		Assert.assertTrue(zone.usePreparedGeometry());
+		Assert.assertFalse(other.usePreparedGeometry());
+	}
+	
+	@Test
+	public void testGridCovering() throws IndeterminateEvaluationException
+	{
+		final GeometricShapeFactory shapes = new GeometricShapeFactory(GF);
+		shapes.setCentre(new Coordinate(50.5, 7.5));
+		shapes.setWidth(1);
+		shapes.setHeight(0.6);
+		shapes.setNumPoints(4000);
+		final Geometry ellipse = shapes.createEllipse();
+		
+		final List<Geometry> geometries = new ArrayList<Geometry>();
+		final Coordinate[] vertices = ellipse.getCoordinates();
+		for (int i = 0; i < vertices.length; i += 97)
+			geometries.add(GF.createPoint(vertices[i]));
+		final Random random = new Random(42);
+		for (int i = 0; i < 500; i++)
+			geometries.add(point(49.9 + random.nextDouble() * 1.2, 7.1 + random.nextDouble() * 0.8));
+		
+		// the zone is prepared with its covering by the first call and re-used like a policy constant
+		final GeometryValue zone = new GeometryValue(ellipse);
+		for (Predicate predicate : PREDICATES)
+		{
+			for (Geometry g : geometries)
+			{
+				final GeometryValue gv = new GeometryValue(g);
+				assertSameAsJTS(predicate, newConstantCall(predicate, gv, zone), gv, zone, true);
+				assertSameAsJTS(predicate, newConstantCall(predicate, zone, gv), zone, gv, true);
+			}
+		}
+		// the zone is large enough for a covering, so the point tests went through it
+		Assert.assertNotNull(zone.getGridCovering());
+	}
+	
+	@Test
+	public void testReprojection() throws IndeterminateEvaluationException
+	{
+		final GeometryValue zone = new GeometryValue(wkt("POLYGON ((50 7, 51 7, 51 8, 50 8, 50 7))"));
+		final GeometryFactory webMercator = new GeometryFactory(new PrecisionModel(), 3857);
+		// LAT/LON 50.5 7.5 and 52 7.5
+		final GeometryValue inside = new GeometryValue(webMercator.createPoint(new Coordinate(834896.18, 6533321.57)));
+		final GeometryValue outside = new GeometryValue(webMercator.createPoint(new Coordinate(834896.18, 6800125.45)));
+		
+		final FirstOrderFunctionCall<BooleanValue> within = new TopologicalFunctions.Within().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE);
+		final FirstOrderFunctionCall<BooleanValue> contains = new TopologicalFunctions.Contains().newCall(Collections.<Expression<?>>emptyList(), GeometryValue.DATATYPE, GeometryValue.DATATYPE);
+		
+		// without reprojection, geometries in different CRS never fulfill a relation
+		Assert.assertEquals(BooleanValue.FALSE, within.evaluate(null, Optional.empty(), inside, zone));
+		
+		System.setProperty(Reprojection.REPROJECTION_PROPERTY, "true");
+		try
+		{
+			final long before = TopologicalFunctions.getCounters(TopologicalFunctions.Within.ID).getReprojections() 
+					+ TopologicalFunctions.getCounters(TopologicalFunctions.Contains.ID).getReprojections();
+			
+			Assert.assertEquals(BooleanValue.TRUE, within.evaluate(null, Optional.empty(), inside, zone));
+			Assert.assertEquals(BooleanValue.TRUE, contains.evaluate(null, Optional.empty(), zone, inside));
+			Assert.assertEquals(BooleanValue.FALSE, within.evaluate(null, Optional.empty(), outside, zone));
+			Assert.assertEquals(BooleanValue.FALSE, contains.evaluate(null, Optional.empty(), zone, outside));
+			
+			// the zone as constant is transformed into the CRS of the request geometry
+			Assert.assertEquals(BooleanValue.TRUE, newConstantCall(predicate(TopologicalFunctions.Contains.ID), zone, inside).evaluate(null, Optional.empty()));
+			Assert.assertEquals(BooleanValue.FALSE, newConstantCall(predicate(TopologicalFunctions.Contains.ID), zone, outside).evaluate(null, Optional.empty()));
+			
+			Assert.assertEquals(before + 6, TopologicalFunctions.getCounters(TopologicalFunctions.Within.ID).getReprojections() 
+					+ TopologicalFunctions.getCounters(TopologicalFunctions.Contains.ID).getReprojections());
+		}
+		finally
+		{
+			System.clearProperty(Reprojection.REPROJECTION_PROPERTY);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.test.index;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.util.GeometricShapeFactory;
+
+import de.securedimensions.geoxacml.index.GridCovering;
+
+/**
+ * 
+ * GeoXACML3 grid covering test: cells classified as inside or outside must agree with the exact location. 
+ */
+public class GridCoveringTest
+{
+	private static final GeometryFactory GF = new GeometryFactory();
+	
+	private static void assertAgrees(final GridCovering covering, final IndexedPointInAreaLocator locator, final Coordinate p)
+	{
+		final byte cell = covering.classify(p);
+		if (cell == GridCovering.BOUNDARY)
+			return;
+		
+		final int expected = cell == GridCovering.INSIDE ? Location.INTERIOR : Location.EXTERIOR;
+		Assert.assertEquals("Location of " + p, expected, locator.locate(p));
+	}
+	
+	private static void assertAgrees(final Geometry g, final int resolution)
+	{
+		final IndexedPointInAreaLocator locator = new IndexedPointInAreaLocator(g);
+		final GridCovering covering = GridCovering.build(g, locator, resolution);
+		final Envelope e = g.getEnvelopeInternal();
+		
+		// vertices and edge midpoints are on the boundary
+		final Coordinate[] vertices = g.getCoordinates();
+		for (int i = 0; i < vertices.length; i++)
+		{
+			assertAgrees(covering, locator, vertices[i]);
+			if (i > 0)
+				assertAgrees(covering, locator, new Coordinate((vertices[i - 1].x + vertices[i].x) / 2, (vertices[i - 1].y + vertices[i].y) / 2));
+		}
+		
+		// points on the edges of the envelope and just outside
+		for (int i = 0; i <= 100; i++)
+		{
+			final double x = e.getMinX() + i * e.getWidth() / 100;
+			final double y = e.getMinY() + i * e.getHeight() / 100;
+			assertAgrees(covering, locator, new Coordinate(x, e.getMaxY()));
+			assertAgrees(covering, locator, new Coordinate(e.getMaxX(), y));
+			assertAgrees(covering, locator, new Coordinate(x, e.getMinY()));
+			assertAgrees(covering, locator, new Coordinate(e.getMinX(), y));
+			assertAgrees(covering, locator, new Coordinate(Math.nextUp(e.getMaxX()), y));
+			assertAgrees(covering, locator, new Coordinate(x, Math.nextUp(e.getMaxY())));
+		}
+		
+		final Random random = new Random(42);
+		for (int i = 0; i < 10000; i++)
+			assertAgrees(covering, locator, new Coordinate(e.getMinX() + random.nextDouble() * e.getWidth(), e.getMinY() + random.nextDouble() * e.getHeight()));
+	}
+	
+	@Test
+	public void testPointOnMaxEdge()
+	{
+		// the width divided by the cell size rounds to slightly more than the resolution
+		final Geometry square = GF.toGeometry(new Envelope(0.01, 0.08, 0.01, 0.08));
+		final IndexedPointInAreaLocator locator = new IndexedPointInAreaLocator(square);
+		final GridCovering covering = GridCovering.build(square, locator, 7);
+		
+		final Coordinate p = new Coordinate(0.08, 0.045);
+		Assert.assertEquals(Location.BOUNDARY, locator.locate(p));
+		Assert.assertEquals(GridCovering.BOUNDARY, covering.classify(p));
+		assertAgrees(square, 7);
+	}
+	
+	@Test
+	public void testOutsideEnvelope()
+	{
+		final Geometry square = GF.toGeometry(new Envelope(0, 1, 0, 1));
+		final GridCovering covering = GridCovering.build(square, new IndexedPointInAreaLocator(square), 4);
+		
+		Assert.assertEquals(GridCovering.OUTSIDE, covering.classify(new Coordinate(1.5, 0.5)));
+		Assert.assertEquals(GridCovering.OUTSIDE, covering.classify(new Coordinate(0.5, -0.5)));
+		Assert.assertEquals(GridCovering.INSIDE, covering.classify(new Coordinate(0.5, 0.5)));
+		Assert.assertEquals(GridCovering.BOUNDARY, covering.classify(new Coordinate(Double.NaN, 0.5)));
+	}
+	
+	@Test
+	public void testEllipse()
+	{
+		final GeometricShapeFactory shapes = new GeometricShapeFactory(GF);
+		shapes.setCentre(new Coordinate(7.1, 50.7));
+		shapes.setWidth(0.3);
+		shapes.setHeight(0.1);
+		shapes.setNumPoints(2000);
+		final Geometry ellipse = shapes.createEllipse();
+		
+		for (final int resolution : new int[] { 1, 3, 7, 64, 256 })
+			assertAgrees(ellipse, resolution);
+	}
+	
+	@Test
+	public void testPolygonWithHole()
+	{
+		final Geometry donut = GF.toGeometry(new Envelope(-10.3, 10.7, -3.3, 3.9)).difference(GF.toGeometry(new Envelope(-1.1, 1.3, -0.7, 0.9)));
+		
+		for (final int resolution : new int[] { 1, 7, 10, 256 })
+			assertAgrees(donut, resolution);
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2019 Secure Dimensions GmbH.
+ *
+ * This file is part of GeoXACML 3 Community Version.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.securedimensions.geoxacml.test.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+
+import de.securedimensions.geoxacml.io.TWKBReader;
+
+/**
+ * 
+ * GeoXACML3 TWKB decoding test, including corrupt input. 
+ */
+public class TWKBReaderTest
+{
+	private final TWKBReader reader = new TWKBReader(new GeometryFactory());
+	
+	private static byte[] bytes(final int... values)
+	{
+		final byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++)
+			bytes[i] = (byte) values[i];
+		return bytes;
+	}
+	
+	private void assertParseException(final byte[] twkb, final String message)
+	{
+		try
+		{
+			reader.read(twkb);
+			Assert.fail("ParseException expected");
+		}
+		catch (ParseException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+	
+	private static byte[] nestedCollections(final int levels)
+	{
+		// GEOMETRYCOLLECTION with one member, nested, around an empty POINT
+		final byte[] twkb = new byte[3 * levels + 2];
+		for (int i = 0; i < levels; i++)
+		{
+			twkb[3 * i] = 0x07;
+			twkb[3 * i + 2] = 0x01;
+		}
+		twkb[3 * levels] = 0x01;
+		twkb[3 * levels + 1] = 0x10;
+		return twkb;
+	}
+	
+	@Test
+	public void testLineString() throws ParseException
+	{
+		// LINESTRING, precision 0, two points with the deltas (1 2) and (1 1)
+		final Geometry g = reader.read(bytes(0x02, 0x00, 0x02, 0x02, 0x04, 0x02, 0x02));
+		Assert.assertEquals("LINESTRING (1 2, 2 3)", g.toText());
+	}
+	
+	@Test
+	public void testOversizePointCount()
+	{
+		// LINESTRING with 2^32-1 points but only two bytes of coordinates
+		assertParseException(bytes(0x02, 0x00, 0xff, 0xff, 0xff, 0xff, 0x0f, 0x02, 0x04), "point count 4294967295 exceeds the 2 remaining bytes");
+	}
+	
+	@Test
+	public void testOversizeRingCount()
+	{
+		// POLYGON with 1000 rings
+		assertParseException(bytes(0x03, 0x00, 0xe8, 0x07, 0x01, 0x00, 0x00), "ring count 1000 exceeds");
+	}
+	
+	@Test
+	public void testOversizePartCount()
+	{
+		// GEOMETRYCOLLECTION with 3 members but only four bytes left
+		assertParseException(bytes(0x07, 0x00, 0x03, 0x01, 0x00, 0x00, 0x00), "part count 3 exceeds");
+	}
+	
+	@Test
+	public void testVarIntTooLong()
+	{
+		assertParseException(bytes(0x02, 0x00, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x01), "longer than 10 bytes");
+	}
+	
+	@Test
+	public void testNestedCollections() throws ParseException
+	{
+		Geometry g = reader.read(nestedCollections(32));
+		for (int i = 0; i < 32; i++)
+			g = g.getGeometryN(0);
+		Assert.assertEquals("POINT EMPTY", g.toText());
+	}
+	
+	@Test
+	public void testNestingTooDeep()
+	{
+		// would overflow the stack without the depth limit
+		assertParseException(nestedCollections(100000), "nested deeper than 32 levels");
+	}
+	
+	@Test
+	public void testTruncated()
+	{
+		// POINT without the y ordinate
+		assertParseException(bytes(0x01, 0x00, 0x02), "unexpected end of data");
+	}
+}